@@ -0,0 +1,231 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Compact binary copies of item.txt and sales_records.txt for fast cold start.
+// The text files stay the source of truth (and the import/export format); a
+// snapshot is only used when it still matches the text file it was made from.
+//
+// Layout (big-endian):
+//   int magic, int version
+//   long sourceLength, long sourceCheck   -- which text file this copy matches
+//   int stringCount, then per string: int byteLength + UTF-8 bytes
+//   int recordCount, then fixed-width records
+// Items: int id, int typeCode, int nameCode, long priceCents, int quantity
+// Sales: long id, byte idWidth, int typeCode, int nameCode, int quantity,
+//        double unitPrice, double total, long saleEpochSecond
+public final class BinarySnapshot {
+
+    private static final int ITEM_MAGIC = 0x50434954;  // "PCIT"
+    private static final int SALES_MAGIC = 0x50435341; // "PCSA"
+    private static final int VERSION = 2; // 2: sourceCheck covers the whole range, not the last 4 KB
+    private static final int CHECK_BLOCK = 1 << 20;
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Records from a sales snapshot plus how many bytes of the text file they cover
+    public static final class SalesSnapshot {
+        public final SalesStore records;
+        public final long coveredBytes;
+
+        SalesSnapshot(SalesStore records, long coveredBytes) {
+            this.records = records;
+            this.coveredBytes = coveredBytes;
+        }
+    }
+
+    private BinarySnapshot() {
+    }
+
+    // Snapshot path next to a text file, e.g. item.txt -> item.bin
+    public static Path snapshotPathFor(Path textFile) {
+        String name = textFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return textFile.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".bin");
+    }
+
+    // ---- Items ----
+
+    // Write rows in item.txt layout; 'source' is the text file they were just written to
+    public static void writeItems(Path bin, List<String[]> rows, Path source) throws IOException {
+        StringDictionary strings = new StringDictionary();
+        int[] typeCodes = new int[rows.size()];
+        int[] nameCodes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            typeCodes[i] = strings.encode(rows.get(i)[1].trim());
+            nameCodes[i] = strings.encode(rows.get(i)[2].trim());
+        }
+
+        writeAtomically(bin, out -> {
+            writeHeader(out, ITEM_MAGIC, Files.size(source), checkOf(source, Files.size(source)), strings);
+            out.writeInt(rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                String[] row = rows.get(i);
+                out.writeInt(Integer.parseInt(row[0].trim()));
+                out.writeInt(typeCodes[i]);
+                out.writeInt(nameCodes[i]);
+                out.writeLong(InventoryTableModel.parsePrice(row[3]));
+                out.writeInt(Integer.parseInt(row[4].trim()));
+            }
+        });
+    }
+
+    // Rows in item.txt layout, or null if there is no snapshot or it does not match 'source'
+    public static List<String[]> readItems(Path bin, Path source) {
+        if (!Files.exists(bin) || !Files.exists(source)) return null;
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            long sourceLength = Files.size(source);
+            if (!headerMatches(buf, ITEM_MAGIC, sourceLength, checkOf(source, sourceLength))) return null;
+            String[] strings = readStrings(buf);
+
+            int count = buf.getInt();
+            List<String[]> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = buf.getInt();
+                String type = strings[buf.getInt()];
+                String name = strings[buf.getInt()];
+                long price = buf.getLong();
+                int quantity = buf.getInt();
+                rows.add(new String[]{InventoryTableModel.formatId(id), type, name,
+                        InventoryTableModel.formatPrice(price), String.valueOf(quantity)});
+            }
+            return rows;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable item snapshot " + bin + ": " + e);
+            return null;
+        }
+    }
+
+    // ---- Sales ----
+
+    // Write records that cover the first 'coveredBytes' bytes of the text file 'source'
+    public static void writeSales(Path bin, List<SaleRecord> records, Path source, long coveredBytes) throws IOException {
+        StringDictionary strings = new StringDictionary();
+        int[] typeCodes = new int[records.size()];
+        int[] nameCodes = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            typeCodes[i] = strings.encode(records.get(i).getType());
+            nameCodes[i] = strings.encode(records.get(i).getName());
+        }
+
+        writeAtomically(bin, out -> {
+            writeHeader(out, SALES_MAGIC, coveredBytes, checkOf(source, coveredBytes), strings);
+            out.writeInt(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                SaleRecord record = records.get(i);
+                out.writeLong(Long.parseLong(record.getSalesId()));
+                out.writeByte(record.getSalesId().length());
+                out.writeInt(typeCodes[i]);
+                out.writeInt(nameCodes[i]);
+                out.writeInt(record.getQuantity());
+                out.writeDouble(record.getUnitPrice());
+                out.writeDouble(record.getTotal());
+                out.writeLong(LocalDateTime.parse(record.getSaleDateTime(), DATE_TIME_FORMAT).toEpochSecond(ZoneOffset.UTC));
+            }
+        });
+    }
+
+    // Records from the snapshot, or null if there is none or the text file no longer starts with what it covers
+    public static SalesSnapshot readSales(Path bin, Path source) {
+        if (!Files.exists(bin) || !Files.exists(source)) return null;
+        try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != SALES_MAGIC || buf.getInt() != VERSION) return null;
+            long covered = buf.getLong();
+            long check = buf.getLong();
+            if (covered > Files.size(source) || check != checkOf(source, covered)) return null;
+            String[] strings = readStrings(buf);
+
+            int count = buf.getInt();
+            SalesStore records = new SalesStore();
+            for (int i = 0; i < count; i++) {
+                long id = buf.getLong();
+                int width = buf.get();
+                String type = strings[buf.getInt()];
+                String name = strings[buf.getInt()];
+                int quantity = buf.getInt();
+                double unitPrice = buf.getDouble();
+                double total = buf.getDouble();
+                String dateTime = LocalDateTime.ofEpochSecond(buf.getLong(), 0, ZoneOffset.UTC).format(DATE_TIME_FORMAT);
+                records.add(new SaleRecord(String.format("%0" + width + "d", id), type, name, quantity, unitPrice, total, dateTime));
+            }
+            return new SalesSnapshot(records, covered);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable sales snapshot " + bin + ": " + e);
+            return null;
+        }
+    }
+
+    // ---- Shared helpers ----
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Temp file, fsync, atomic move: a crash never leaves a half-written snapshot in place
+    private static void writeAtomically(Path bin, BodyWriter body) throws IOException {
+        Path temp = bin.resolveSibling(bin.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            body.write(out);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, bin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHeader(DataOutputStream out, int magic, long sourceLength, long sourceCheck, StringDictionary strings) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(VERSION);
+        out.writeLong(sourceLength);
+        out.writeLong(sourceCheck);
+        out.writeInt(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+            byte[] bytes = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static boolean headerMatches(MappedByteBuffer buf, int magic, long sourceLength, long sourceCheck) {
+        return buf.getInt() == magic && buf.getInt() == VERSION
+                && buf.getLong() == sourceLength && buf.getLong() == sourceCheck;
+    }
+
+    private static String[] readStrings(MappedByteBuffer buf) {
+        String[] strings = new String[buf.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // CRC of the first 'length' bytes, so any edit to the text, even one that keeps its length,
+    // makes the snapshot stale. CRC32 runs far faster than parsing, so this keeps the snapshot's gain.
+    private static long checkOf(Path source, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+            java.nio.ByteBuffer block = java.nio.ByteBuffer.allocateDirect((int) Math.min(CHECK_BLOCK, Math.max(length, 1)));
+            long position = 0;
+            while (position < length) {
+                block.clear().limit((int) Math.min(block.capacity(), length - position));
+                int read = ch.read(block, position);
+                if (read <= 0) break;
+                position += read;
+                block.flip();
+                crc.update(block);
+            }
+        }
+        return crc.getValue();
+    }
+}
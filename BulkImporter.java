@@ -0,0 +1,567 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bulk import of a catalog or supplier restock CSV.
+//
+// The file is streamed in line-aligned chunks of about CHUNK_BYTES; worker threads
+// read, parse and validate the chunks in parallel against a snapshot of the catalog
+// taken when the importer is created, while the calling thread merges finished
+// chunks in file order. Only a few chunks are in memory at a time, so file size is
+// not limited by the heap.
+//
+// Columns are named by an optional header line (id, type, name, price, quantity or
+// qty, date; any order). Without a header the item.txt layout is assumed, with an
+// optional delivery date: id,type,name,price,quantity[,date].
+//   - A row with an ID restocks that item; the ID must exist.
+//   - A row without an ID restocks the item with that name (case-insensitive), or
+//     adds a new item when there is none, which needs type, name and price.
+//     Rows naming the same new item are merged into one item.
+// Type and price are ignored on restock rows: only quantities are merged.
+// Each restock row becomes a supply ledger delivery (dated by the row, default today)
+// and the item's stock grows by the sum of its rows; new items start with their
+// quantity, like the Add form.
+// Bad rows are rejected with their line number and a reason and do not stop the import.
+//
+// plan() works everything out without touching any file. writeItems() then writes all
+// item changes with one item log append, which is what makes the import take effect,
+// and apply() updates the table and checkout engine to match. recordDeliveries() adds the
+// deliveries to the supply ledger with one write last; each is tagged with the import and
+// its line, so after a failure it can be run again without recording any delivery twice.
+//
+// Usage: java BulkImporter --file feed.csv [--dir .] [--threads <cores>] [--dry-run]
+public class BulkImporter {
+
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int SCAN_BYTES = 8192;
+
+    private static final Metrics.Histogram IMPORT_TIME = Metrics.get().histogram("pos_import_seconds",
+            "Time to read, validate and merge one bulk import file");
+    private static final Metrics.Counter ROWS = Metrics.get().counter("pos_import_rows_total",
+            "Data rows read by bulk imports");
+    private static final Metrics.Counter REJECTED = Metrics.get().counter("pos_import_rejected_total",
+            "Bulk import rows rejected by validation");
+
+    // One row that was not imported
+    public static final class Rejection {
+        public final long line;
+        public final String reason;
+        public final String text;
+
+        Rejection(long line, String reason, String text) {
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+        }
+    }
+
+    // An item the import adds to the catalog
+    public static final class NewItem {
+        public final int id;
+        public final String type;
+        public final String name;
+        public final long priceCents;
+        public int quantity;
+
+        NewItem(int id, String type, String name, long priceCents, int quantity) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.priceCents = priceCents;
+            this.quantity = quantity;
+        }
+    }
+
+    // Everything an import will change, worked out before anything is written
+    public static final class Plan {
+        public final Path source;
+        public final String importId; // tags this import's deliveries in the supply ledger
+        public final long rows;
+        public final Map<Integer, Integer> restocks; // item ID -> units added, in first-seen order
+        public final List<SupplyLedger.Delivery> deliveries;
+        public final List<NewItem> newItems;
+        public final List<Rejection> rejections;
+        public final int nextId; // first ID still free after the new items
+        public final long elapsedNanos;
+
+        Plan(Path source, String importId, long rows, Map<Integer, Integer> restocks, List<SupplyLedger.Delivery> deliveries,
+             List<NewItem> newItems, List<Rejection> rejections, int nextId, long elapsedNanos) {
+            this.source = source;
+            this.importId = importId;
+            this.rows = rows;
+            this.restocks = restocks;
+            this.deliveries = deliveries;
+            this.newItems = newItems;
+            this.rejections = rejections;
+            this.nextId = nextId;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Item log entries for the whole import: new items, then stock deltas
+        public List<String> journalEntries() {
+            List<String> entries = new ArrayList<>(newItems.size() + restocks.size());
+            for (NewItem item : newItems) {
+                entries.add(ItemJournal.addEntry(InventoryTableModel.formatId(item.id), item.type, item.name,
+                        InventoryTableModel.formatPrice(item.priceCents), item.quantity));
+            }
+            for (Map.Entry<Integer, Integer> restock : restocks.entrySet()) {
+                entries.add(ItemJournal.stockDeltaEntry(InventoryTableModel.formatId(restock.getKey()), restock.getValue()));
+            }
+            return entries;
+        }
+
+        // rejected rows go next to the source file: feed.csv -> feed.csv.rejected.txt
+        public Path rejectionsFile() {
+            return source.resolveSibling(source.getFileName() + ".rejected.txt");
+        }
+
+        public String summary() {
+            long units = 0;
+            for (int quantity : restocks.values()) units += quantity;
+            return String.format("%d rows: %d items restocked (%d units, %d deliveries), %d new items, %d rejected",
+                    rows, restocks.size(), units, deliveries.size(), newItems.size(), rejections.size());
+        }
+    }
+
+    // A parsed row that passed validation; slot is -1 for a new item
+    private static final class Row {
+        final long line;
+        final int slot;
+        final String type;
+        final String name;
+        final long priceCents;
+        final int quantity;
+        final LocalDate date;
+
+        Row(long line, int slot, String type, String name, long priceCents, int quantity, LocalDate date) {
+            this.line = line;
+            this.slot = slot;
+            this.type = type;
+            this.name = name;
+            this.priceCents = priceCents;
+            this.quantity = quantity;
+            this.date = date;
+        }
+    }
+
+    // One chunk's parsed rows and rejections; line numbers are relative to the chunk until merged
+    private static final class Chunk {
+        final List<Row> rows = new ArrayList<>();
+        final List<Rejection> rejections = new ArrayList<>();
+        final Map<String, LocalDate> dates = new HashMap<>(); // a feed repeats a few dates, and parsing them is slow
+        long lines;
+    }
+
+    // Column positions, -1 when the file has no such column
+    private static final class Columns {
+        int id = -1, type = -1, name = -1, price = -1, quantity = -1, date = -1;
+        int required; // rows must have at least this many fields
+
+        static final Columns DEFAULT = new Columns(new String[]{"id", "type", "name", "price", "quantity", "date"});
+
+        Columns(String[] header) {
+            for (int i = 0; i < header.length; i++) {
+                switch (header[i].trim().toLowerCase(Locale.ROOT)) {
+                    case "id": id = i; break;
+                    case "type": type = i; break;
+                    case "name": name = i; break;
+                    case "price": price = i; break;
+                    case "quantity": case "qty": quantity = i; break;
+                    case "date": date = i; break;
+                    default: break; // other columns, e.g. a supplier's own code, are ignored
+                }
+            }
+            required = 1 + Math.max(Math.max(id, type), Math.max(Math.max(name, price), quantity));
+        }
+
+        // The header's columns, or null if the line is data rather than a header
+        static Columns fromHeader(String line) {
+            Columns columns = new Columns(splitFields(line));
+            return columns.quantity >= 0 && (columns.id >= 0 || columns.name >= 0) ? columns : null;
+        }
+    }
+
+    // Catalog snapshot. Each existing item has a slot (its row at the time), so the
+    // merge can total quantities in plain arrays instead of maps.
+    private final int[] idsBySlot;
+    private final Map<Integer, Integer> slotsById = new HashMap<>();
+    private final Map<String, Integer> slotsByName = new HashMap<>(); // normalized name -> slot
+    private final int firstNewId;
+    private final LocalDate today;
+
+    // Snapshot of the catalog to validate against; new items are numbered from 'firstNewId'.
+    // Reads the model, so in the GUI create it on the EDT.
+    public BulkImporter(InventoryTableModel model, int firstNewId, LocalDate today) {
+        idsBySlot = new int[model.getRowCount()];
+        for (int row = 0; row < idsBySlot.length; row++) {
+            idsBySlot[row] = model.getNumericId(row);
+            slotsById.put(idsBySlot[row], row);
+            slotsByName.put(ItemCatalog.normalize(model.getName(row)), row);
+        }
+        this.firstNewId = firstNewId;
+        this.today = today;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(".");
+        Path file = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean dryRun = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[++i]); break;
+                case "--file": file = Paths.get(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--dry-run": dryRun = true; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (file == null) throw new IllegalArgumentException("--file is required");
+
+        ItemJournal itemJournal = new ItemJournal(dir.resolve("item.txt").toString(), dir.resolve("item.log").toString());
+        InventoryTableModel model = new InventoryTableModel();
+        int maxId = model.loadRows(itemJournal.load());
+        Map<String, Integer> idsByName = new HashMap<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            idsByName.put(ItemCatalog.normalize(model.getName(row)), model.getNumericId(row));
+        }
+        try (SupplyLedger supplyLedger = SupplyLedger.open(dir.resolve("supply_ledger.txt"), dir.resolve("supply.txt"), idsByName)) {
+            // New items take IDs past every item and delivery ever recorded (see InventoryWindow.openSupplyLedger)
+            SaleIdAllocator itemIds = SaleIdAllocator.open(dir.resolve("item_id.hwm"), Math.max(maxId, supplyLedger.maxItemId()));
+            Plan plan = new BulkImporter(model, (int) itemIds.peekNextId(), LocalDate.now()).plan(file, threads);
+            System.out.printf("Read %s with %d threads in %.0f ms%n", file, threads, plan.elapsedNanos / 1e6);
+            System.out.println(plan.summary());
+            if (!dryRun) {
+                long started = System.nanoTime();
+                itemIds.skipTo(plan.nextId);
+                writeItems(plan, itemJournal);
+                itemJournal.checkpoint();
+                try {
+                    recordDeliveries(plan, supplyLedger);
+                } catch (IOException e) {
+                    throw new IOException("The items and stock were imported, but the " + plan.deliveries.size()
+                            + " deliveries could not be added to the supply ledger: " + e.getMessage(), e);
+                }
+                System.out.printf("Wrote the item log and supply ledger in %.0f ms%n", (System.nanoTime() - started) / 1e6);
+            }
+            if (!plan.rejections.isEmpty()) System.out.println("Rejected rows: " + plan.rejectionsFile());
+            itemIds.close();
+        } finally {
+            itemJournal.close();
+        }
+    }
+
+    // Read and validate 'file' with 'threads' workers. Writes nothing but the rejected-rows
+    // report; throws IOException if the file cannot be read or has no usable columns.
+    public Plan plan(Path file, int threads) throws IOException {
+        long started = System.nanoTime();
+        AtomicInteger workerNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "import-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Merger merger = new Merger(importIdFor(file));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] head = read(channel, 0, Math.min(3, size));
+            long start = head.length == 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF ? 3 : 0;
+            long firstEnd = lineEnd(channel, start, size);
+            Columns header = Columns.fromHeader(new String(read(channel, start, firstEnd), StandardCharsets.UTF_8).trim());
+            Columns columns = header != null ? header : Columns.DEFAULT;
+            if (header != null) {
+                start = firstEnd;
+                merger.lines = 1;
+            }
+
+            // Keep two chunks per worker in flight; merge the oldest when the queue is full
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+            while (start < size) {
+                long end = lineEnd(channel, Math.min(size, start + CHUNK_BYTES), size);
+                long from = start;
+                inFlight.add(workers.submit(() -> parse(columns, read(channel, from, end))));
+                start = end;
+                if (inFlight.size() >= 2 * threads) merger.merge(await(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) merger.merge(await(inFlight.poll()));
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Plan plan = merger.toPlan(file, System.nanoTime() - started);
+        IMPORT_TIME.recordSince(started);
+        ROWS.add(plan.rows);
+        REJECTED.add(plan.rejections.size());
+        writeRejections(plan);
+        return plan;
+    }
+
+    // Write the plan's item changes as one item log append forced to disk; once this returns
+    // the import has taken effect, and if it throws nothing was written (a checkpoint the append
+    // sets off cannot fail it). Does file I/O; call it on the persistence executor.
+    public static void writeItems(Plan plan, ItemJournal itemJournal) throws IOException {
+        itemJournal.append(plan.journalEntries());
+    }
+
+    // Add the plan's deliveries to the supply ledger as one write forced to disk, after writeItems().
+    // If it fails it can be called again: deliveries the failed call got into the ledger are skipped.
+    // Does file I/O; call it on the persistence executor.
+    public static void recordDeliveries(Plan plan, SupplyLedger supplyLedger) throws IOException {
+        supplyLedger.recordAll(plan.deliveries);
+    }
+
+    // Ledger tag for one run of an import: the file name (commas and colons replaced) and the time
+    private static String importIdFor(Path file) {
+        return file.getFileName().toString().replaceAll("[,:\\s]", "_") + "@" + System.currentTimeMillis();
+    }
+
+    // Show the import in memory: new rows in the table (one insert event), stock in the engine,
+    // which the table follows. Call on the EDT after writeItems().
+    public static void apply(Plan plan, InventoryTableModel model, CheckoutEngine checkoutEngine) {
+        List<String[]> rows = new ArrayList<>(plan.newItems.size());
+        for (NewItem item : plan.newItems) {
+            rows.add(new String[]{InventoryTableModel.formatId(item.id), item.type, item.name,
+                    InventoryTableModel.formatPrice(item.priceCents), String.valueOf(item.quantity)});
+        }
+        model.addRows(rows);
+        for (NewItem item : plan.newItems) {
+            checkoutEngine.setStock(item.id, item.quantity);
+        }
+        for (Map.Entry<Integer, Integer> restock : plan.restocks.entrySet()) {
+            checkoutEngine.restock(restock.getKey(), restock.getValue());
+        }
+    }
+
+    // Parse one chunk of lines. Runs on a worker; only reads the catalog snapshot.
+    private Chunk parse(Columns columns, byte[] bytes) {
+        Chunk chunk = new Chunk();
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int at = 0;
+        while (at < text.length()) {
+            int newline = text.indexOf('\n', at);
+            int end = newline == -1 ? text.length() : newline;
+            String line = text.substring(at, end > at && text.charAt(end - 1) == '\r' ? end - 1 : end);
+            at = end + 1;
+            long number = ++chunk.lines;
+            if (line.trim().isEmpty()) continue;
+            try {
+                chunk.rows.add(parseRow(columns, chunk, number, line));
+            } catch (IllegalArgumentException e) {
+                chunk.rejections.add(new Rejection(number, e.getMessage(), line));
+            }
+        }
+        return chunk;
+    }
+
+    // Validate one row; throws IllegalArgumentException with the reason it is rejected
+    private Row parseRow(Columns columns, Chunk chunk, long number, String line) {
+        String[] fields = splitFields(line);
+        if (fields.length < columns.required) throw new IllegalArgumentException("expected at least " + columns.required + " columns");
+        String idText = field(fields, columns.id);
+        String name = field(fields, columns.name);
+        String type = field(fields, columns.type);
+        String priceText = field(fields, columns.price);
+        String dateText = field(fields, columns.date);
+
+        int quantity;
+        try {
+            quantity = Integer.parseInt(field(fields, columns.quantity));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("quantity is not a whole number");
+        }
+        if (quantity < 0) throw new IllegalArgumentException("quantity is negative");
+
+        LocalDate date = dateText.isEmpty() ? today : chunk.dates.get(dateText);
+        if (date == null) {
+            try {
+                date = LocalDate.parse(dateText);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("date is not yyyy-MM-dd");
+            }
+            chunk.dates.put(dateText, date);
+        }
+
+        // Existing item by ID, then by name
+        if (!idText.isEmpty()) {
+            int id;
+            try {
+                id = Integer.parseInt(idText);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ID is not a number");
+            }
+            Integer slot = slotsById.get(id);
+            if (slot == null) throw new IllegalArgumentException("unknown item ID " + idText);
+            Integer named = name.isEmpty() ? null : slotsByName.get(ItemCatalog.normalize(name));
+            if (named != null && !named.equals(slot)) throw new IllegalArgumentException("ID " + idText + " and name " + name + " are different items");
+            return new Row(number, slot, null, null, 0, quantity, date);
+        }
+        if (name.isEmpty()) throw new IllegalArgumentException("needs an ID or a name");
+        Integer slot = slotsByName.get(ItemCatalog.normalize(name));
+        if (slot != null) return new Row(number, slot, null, null, 0, quantity, date);
+
+        // New item
+        if (type.isEmpty()) throw new IllegalArgumentException("new item needs a type");
+        long priceCents;
+        try {
+            priceCents = InventoryTableModel.parsePrice(priceText);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("new item needs a valid price");
+        }
+        if (priceCents < 0) throw new IllegalArgumentException("price is negative");
+        return new Row(number, -1, type, name, priceCents, quantity, date);
+    }
+
+    // Merges chunks in file order into the plan; runs on the calling thread only
+    private final class Merger {
+        final String importId;
+        long lines; // lines before the next chunk, header included
+        long rows;
+        final long[] units = new long[idsBySlot.length]; // per slot
+        int[] restocked = new int[16]; // slots with units, in first-seen order
+        int restockedCount;
+        final List<SupplyLedger.Delivery> deliveries = new ArrayList<>();
+        final Map<String, NewItem> newItems = new LinkedHashMap<>(); // normalized name -> item
+        final List<Rejection> rejections = new ArrayList<>();
+        int nextId = firstNewId;
+
+        Merger(String importId) {
+            this.importId = importId;
+        }
+
+        void merge(Chunk chunk) {
+            List<Rejection> merged = new ArrayList<>(chunk.rejections.size());
+            for (Rejection rejection : chunk.rejections) {
+                merged.add(new Rejection(lines + rejection.line, rejection.reason, rejection.text));
+            }
+            for (Row row : chunk.rows) {
+                rows++;
+                try {
+                    add(row, lines + row.line);
+                } catch (IllegalArgumentException e) {
+                    merged.add(new Rejection(lines + row.line, e.getMessage(), null));
+                }
+            }
+            rows += chunk.rejections.size();
+            merged.sort((a, b) -> Long.compare(a.line, b.line));
+            rejections.addAll(merged);
+            lines += chunk.lines;
+        }
+
+        private void add(Row row, long line) {
+            if (row.slot == -1) {
+                NewItem item = newItems.get(ItemCatalog.normalize(row.name));
+                if (item == null) {
+                    newItems.put(ItemCatalog.normalize(row.name), new NewItem(nextId++, row.type, row.name, row.priceCents, row.quantity));
+                } else if ((long) item.quantity + row.quantity > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("quantity too large for one item");
+                } else {
+                    item.quantity += row.quantity;
+                }
+                return;
+            }
+            if (row.quantity == 0) return; // listed but nothing delivered
+            if (units[row.slot] + row.quantity > Integer.MAX_VALUE) throw new IllegalArgumentException("quantity too large for one item");
+            if (units[row.slot] == 0) {
+                if (restockedCount == restocked.length) restocked = Arrays.copyOf(restocked, restockedCount * 2);
+                restocked[restockedCount++] = row.slot;
+            }
+            units[row.slot] += row.quantity;
+            deliveries.add(new SupplyLedger.Delivery(idsBySlot[row.slot], row.date, row.quantity, importId + ":" + line));
+        }
+
+        Plan toPlan(Path source, long elapsedNanos) {
+            Map<Integer, Integer> restocks = new LinkedHashMap<>();
+            for (int i = 0; i < restockedCount; i++) {
+                int slot = restocked[i];
+                restocks.put(idsBySlot[slot], (int) units[slot]);
+            }
+            return new Plan(source, importId, rows, restocks, deliveries, new ArrayList<>(newItems.values()), rejections, nextId, elapsedNanos);
+        }
+    }
+
+    // Rejected rows, one "line,reason,text" line each; an old report is removed when there are none
+    private static void writeRejections(Plan plan) throws IOException {
+        Path report = plan.rejectionsFile();
+        if (plan.rejections.isEmpty()) {
+            Files.deleteIfExists(report);
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            for (Rejection rejection : plan.rejections) {
+                writer.write(rejection.line + "," + rejection.reason + (rejection.text == null ? "" : "," + rejection.text));
+                writer.newLine();
+            }
+        }
+    }
+
+    // Fields split on commas, trimmed, with surrounding double quotes removed
+    private static String[] splitFields(String line) {
+        String[] fields = line.split(",", -1);
+        for (int i = 0; i < fields.length; i++) {
+            String field = fields[i].trim();
+            if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")) {
+                field = field.substring(1, field.length() - 1).trim();
+            }
+            fields[i] = field;
+        }
+        return fields;
+    }
+
+    private static String field(String[] fields, int column) {
+        return column >= 0 && column < fields.length ? fields[column] : "";
+    }
+
+    // Position just past the first newline at or after 'from', or 'size' if there is none
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BYTES);
+        for (long position = from; position < size; position += buffer.limit()) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return position + i + 1;
+            }
+        }
+        return size;
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+            // keep reading
+        }
+        return buffer.array();
+    }
+
+    private static Chunk await(Future<Chunk> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Import failed: " + cause, cause);
+        }
+    }
+}
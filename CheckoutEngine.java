@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless stock keeper for checkouts from any number of terminals.
+// Each item's on-hand quantity is an AtomicInteger. A checkout reserves every
+// line with a compare-and-set on that item's counter and, if any line is short,
+// gives back what it already took, so a sale is applied to all its items or
+// to none. There is no global lock: sales of different items never contend.
+// The engine is the source of truth for stock; the Swing model follows it
+// through a StockListener.
+public class CheckoutEngine {
+
+    // One line of a sale request
+    public static final class Line {
+        public final int itemId;
+        public final int quantity;
+
+        public Line(int itemId, int quantity) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+        }
+    }
+
+    // Outcome of a checkout. On failure, names the first line that could not be reserved.
+    public static final class Result {
+        private final boolean committed;
+        private final int failedItemId;
+        private final int available;
+        private final int[] remaining;
+
+        private Result(boolean committed, int failedItemId, int available, int[] remaining) {
+            this.committed = committed;
+            this.failedItemId = failedItemId;
+            this.available = available;
+            this.remaining = remaining;
+        }
+
+        public boolean isCommitted() { return committed; }
+        public int getFailedItemId() { return failedItemId; }
+        // Stock of the failed item when it was checked (-1 if the item does not exist)
+        public int getAvailable() { return available; }
+        // Stock left after this sale, per line, in request order
+        public int getRemaining(int line) { return remaining[line]; }
+    }
+
+    // Called after an item's stock changes, on the thread that changed it.
+    // The quantity is -1 when the item was removed.
+    public interface StockListener {
+        void stockChanged(int itemId, int quantity);
+    }
+
+    private final ConcurrentHashMap<Integer, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final List<StockListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addStockListener(StockListener listener) {
+        listeners.add(listener);
+    }
+
+    // Replace all stock with the quantities in the model (at load)
+    public void loadFrom(InventoryTableModel model) {
+        stock.clear();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            stock.put(model.getNumericId(row), new AtomicInteger(model.getQuantity(row)));
+        }
+    }
+
+    // Current stock of an item, or -1 if it is unknown
+    public int getStock(int itemId) {
+        AtomicInteger counter = stock.get(itemId);
+        return counter == null ? -1 : counter.get();
+    }
+
+    // Set an item's stock outright (new item, or an edit from the inventory form)
+    public void setStock(int itemId, int quantity) {
+        stock.computeIfAbsent(itemId, id -> new AtomicInteger()).set(quantity);
+        notifyListeners(itemId, quantity);
+    }
+
+    public void remove(int itemId) {
+        if (stock.remove(itemId) != null) notifyListeners(itemId, -1);
+    }
+
+    // Add delivered stock; returns the new quantity, or -1 if the item is unknown.
+    // Throws ArithmeticException, leaving the stock as it was, if the total would pass Integer.MAX_VALUE.
+    public int restock(int itemId, int quantity) {
+        AtomicInteger counter = stock.get(itemId);
+        if (counter == null) return -1;
+        while (true) {
+            int current = counter.get();
+            int now = Math.addExact(current, quantity);
+            if (counter.compareAndSet(current, now)) {
+                notifyListeners(itemId, now);
+                return now;
+            }
+        }
+    }
+
+    // Take every line or none. Throws IllegalArgumentException, taking nothing, if a line's quantity
+    // is not positive: a zero or negative line would otherwise pass the stock check and add stock.
+    public Result checkout(List<Line> lines) {
+        for (Line line : lines) {
+            if (line.quantity <= 0) {
+                throw new IllegalArgumentException("Sale quantity for item " + InventoryTableModel.formatId(line.itemId)
+                        + " must be greater than zero: " + line.quantity);
+            }
+        }
+        int[] remaining = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            AtomicInteger counter = stock.get(line.itemId);
+            int left = counter == null ? -1 : reserve(counter, line.quantity);
+            if (left < 0) {
+                int available = counter == null ? -1 : counter.get();
+                release(lines, i);
+                return new Result(false, line.itemId, available, null);
+            }
+            remaining[i] = left;
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            notifyListeners(lines.get(i).itemId, remaining[i]);
+        }
+        return new Result(true, 0, 0, remaining);
+    }
+
+    // Take 'quantity' if that much is on hand; returns what is left, or -1 if short
+    private static int reserve(AtomicInteger counter, int quantity) {
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) return -1;
+            if (counter.compareAndSet(current, current - quantity)) return current - quantity;
+        }
+    }
+
+    // Give back the first 'count' lines of a failed checkout
+    private void release(List<Line> lines, int count) {
+        for (int i = 0; i < count; i++) {
+            AtomicInteger counter = stock.get(lines.get(i).itemId);
+            if (counter != null) counter.addAndGet(lines.get(i).quantity);
+        }
+    }
+
+    private void notifyListeners(int itemId, int quantity) {
+        for (StockListener listener : listeners) {
+            listener.stockChanged(itemId, quantity);
+        }
+    }
+
+    // Throughput benchmark: many threads selling against a small hot set of items.
+    // Usage: CheckoutEngine [threads] [items] [hotItems] [seconds]
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 4;
+        int items = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int hotItems = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        System.out.println("threads,checkouts_per_sec,rejected,stock_consistent");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            runBenchmark(threads, items, hotItems, seconds);
+        }
+    }
+
+    private static void runBenchmark(int threads, int items, int hotItems, int seconds) throws InterruptedException {
+        CheckoutEngine engine = new CheckoutEngine();
+        int initialStock = 1_000_000_000; // enough that the hot set does not sell out mid-run
+        Random seed = new Random(42);
+        for (int id = 1; id <= items; id++) {
+            engine.stock.put(id, new AtomicInteger(initialStock / 2 + seed.nextInt(initialStock / 2)));
+        }
+        long stockBefore = totalStock(engine);
+
+        LongAdder committed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder unitsSold = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<Line> sale = new ArrayList<>(3);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (System.nanoTime() < deadline) {
+                    sale.clear();
+                    int lines = 1 + random.nextInt(3);
+                    int units = 0;
+                    for (int i = 0; i < lines; i++) {
+                        // 90% of lines hit the hot set
+                        int id = random.nextInt(10) < 9 ? 1 + random.nextInt(hotItems) : 1 + random.nextInt(items);
+                        int quantity = 1 + random.nextInt(3);
+                        sale.add(new Line(id, quantity));
+                        units += quantity;
+                    }
+                    if (engine.checkout(sale).isCommitted()) {
+                        committed.increment();
+                        unitsSold.add(units);
+                    } else {
+                        rejected.increment();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        double elapsed = (System.nanoTime() - began) / 1e9;
+
+        boolean consistent = stockBefore - totalStock(engine) == unitsSold.sum();
+        System.out.printf("%d,%.0f,%d,%b%n", threads, committed.sum() / elapsed, rejected.sum(), consistent);
+    }
+
+    private static long totalStock(CheckoutEngine engine) {
+        long total = 0;
+        for (Map.Entry<Integer, AtomicInteger> e : engine.stock.entrySet()) {
+            total += e.getValue().get();
+        }
+        return total;
+    }
+}
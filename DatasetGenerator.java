@@ -0,0 +1,260 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+// Writes a synthetic but realistic data set in the files the application reads:
+// item.txt, sales_records.txt, supply_ledger.txt, the legacy name-keyed
+// supply.txt and type.txt. The same seed and sizes always give byte-identical
+// files, so scaling problems found with them can be reproduced.
+//
+// Items are PC parts with a per-type brand, series and price band; every name is
+// unique. Each item is derived from the seed and its ID alone (see item(id)), so
+// sales and deliveries can refer to items without holding the catalog in memory.
+// Sales favour a small set of popular items, come in tickets of one to three
+// lines sharing a timestamp, fall in shop hours and are in time order, ending on
+// --end-date. Deliveries are spread over the same days.
+//
+// --feed N also writes supplier_feed.csv, an N-row file for BulkImporter: restocks by
+// ID and by name, new items, and about one row in fifty that should be rejected.
+//
+// Derived files left from an earlier data set (item.log, *.bin, *.idx, sale_id.hwm, item_id.hwm)
+// are removed so the application starts from the generated text.
+//
+// Usage: java DatasetGenerator [--dir generated-data] [--items 1000000] [--sales 5000000]
+//                              [--supply 1000000] [--days 730] [--end-date 2025-06-30] [--seed 42]
+//                              [--feed 0]
+public final class DatasetGenerator {
+
+    // One generated item
+    public static final class Item {
+        public final int id;
+        public final String type;
+        public final String name;
+        public final long priceCents;
+        public final int quantity;
+
+        Item(int id, String type, String name, long priceCents, int quantity) {
+            this.id = id;
+            this.type = type;
+            this.name = name;
+            this.priceCents = priceCents;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int OPENING_SECOND = 9 * 3600;
+    private static final int CLOSING_SECOND = 21 * 3600;
+
+    // Type, then its brands, series and price band in whole pesos
+    private static final String[] TYPES = {"CPU", "RAM", "SSD", "HDD", "GPU", "Motherboard", "PSU", "Monitor",
+            "Case", "Cooling Fan", "Keyboard", "Mouse", "Headset", "Network Card"};
+    private static final String[][] BRANDS = {
+            {"Intel", "AMD"},
+            {"Kingston", "Corsair", "G.Skill", "Crucial", "TeamGroup"},
+            {"Samsung", "Kingston", "WD", "Crucial", "GUDGA"},
+            {"Seagate", "WD", "Toshiba"},
+            {"NVIDIA", "AMD", "Intel"},
+            {"ASUS", "MSI", "Gigabyte", "ASRock"},
+            {"Corsair", "Seasonic", "Cooler Master", "FSP"},
+            {"AOC", "Dell", "LG", "Samsung", "ViewSonic"},
+            {"DeepCool", "NZXT", "Tecware", "Lian Li"},
+            {"Cooler Master", "Arctic", "Noctua", "DeepCool"},
+            {"Logitech", "Razer", "Rakk", "A4Tech"},
+            {"Logitech", "Razer", "Rakk", "A4Tech"},
+            {"HyperX", "Logitech", "Razer", "JBL"},
+            {"TP-Link", "D-Link", "Intel", "ASUS"}};
+    private static final String[][] SERIES = {
+            {"Core i3", "Core i5", "Core i7", "Ryzen 5", "Ryzen 7"},
+            {"8GB DDR4", "16GB DDR4", "32GB DDR5", "16GB DDR5"},
+            {"256GB NVMe", "512GB NVMe", "1TB NVMe", "480GB SATA"},
+            {"1TB", "2TB", "4TB"},
+            {"GTX 1650", "RTX 3060", "RTX 4070", "RX 6600", "Arc A750"},
+            {"B450", "B550", "B760", "X670"},
+            {"550W Bronze", "650W Gold", "750W Gold", "850W Platinum"},
+            {"22inch IPS", "24inch IPS", "27inch VA", "27inch 144Hz"},
+            {"Mid Tower", "Mini Tower", "Full Tower"},
+            {"120mm RGB Fan", "AIO 240", "Tower Cooler"},
+            {"Membrane", "Mechanical TKL", "Mechanical Full"},
+            {"Wired", "Wireless", "Gaming"},
+            {"Stereo", "7.1 Gaming", "Wireless"},
+            {"WiFi PCIe AC1300", "Gigabit LAN", "USB WiFi N300"}};
+    private static final int[][] PRICE_BANDS = {
+            {4500, 25000}, {900, 7500}, {1200, 8000}, {1800, 6500}, {8500, 45000}, {3500, 18000}, {1800, 9500},
+            {3000, 22000}, {1200, 9000}, {300, 6500}, {350, 6500}, {250, 4500}, {500, 8000}, {400, 2500}};
+
+    private final long seed;
+    private final int itemCount;
+
+    public DatasetGenerator(long seed, int itemCount) {
+        this.seed = seed;
+        this.itemCount = itemCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get("generated-data");
+        int items = 1_000_000;
+        int sales = 5_000_000;
+        int supply = 1_000_000;
+        int days = 730;
+        LocalDate endDate = LocalDate.of(2025, 6, 30);
+        long seed = 42;
+        int feed = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[i + 1]); break;
+                case "--items": items = Integer.parseInt(args[i + 1]); break;
+                case "--sales": sales = Integer.parseInt(args[i + 1]); break;
+                case "--supply": supply = Integer.parseInt(args[i + 1]); break;
+                case "--days": days = Integer.parseInt(args[i + 1]); break;
+                case "--end-date": endDate = LocalDate.parse(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--feed": feed = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (items < 1 || days < 1) throw new IllegalArgumentException("--items and --days must be at least 1");
+
+        Files.createDirectories(dir);
+        for (String derived : new String[]{"item.log", "item.log.old", "item.bin", "sales_records.bin", "supply_ledger.idx", "sale_id.hwm", "item_id.hwm"}) {
+            Files.deleteIfExists(dir.resolve(derived));
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(seed, items);
+        LocalDate firstDay = endDate.minusDays(days - 1);
+        long started = System.nanoTime();
+        generator.writeTypes(dir.resolve("type.txt"));
+        generator.writeItems(dir.resolve("item.txt"));
+        long saleLines = generator.writeSales(dir.resolve("sales_records.txt"), sales, firstDay, endDate);
+        generator.writeSupply(dir.resolve("supply_ledger.txt"), dir.resolve("supply.txt"), supply, firstDay, endDate);
+        if (feed > 0) generator.writeFeed(dir.resolve("supplier_feed.csv"), feed, endDate);
+        System.out.printf("Wrote %d items, %d sale lines and %d deliveries (%s to %s) to %s in %.1f s%n",
+                items, saleLines, supply, firstDay, endDate, dir.toAbsolutePath(), (System.nanoTime() - started) / 1e9);
+    }
+
+    // The item with this ID (1..itemCount); the same every time for a given seed
+    public Item item(int id) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + id);
+        int type = random.nextInt(TYPES.length);
+        String brand = BRANDS[type][random.nextInt(BRANDS[type].length)];
+        String series = SERIES[type][random.nextInt(SERIES[type].length)];
+        // The model code is the ID in base 36, which keeps names unique
+        String name = brand + " " + series + " " + Character.toString((char) ('A' + random.nextInt(26)))
+                + Integer.toString(id, 36).toUpperCase();
+        int low = PRICE_BANDS[type][0];
+        int high = PRICE_BANDS[type][1];
+        long priceCents = (low + random.nextInt(high - low + 1)) * 100L;
+        if (random.nextInt(4) == 0) priceCents -= 1 + random.nextInt(99); // some prices end in centavos
+        return new Item(id, TYPES[type], name, priceCents, random.nextInt(500));
+    }
+
+    // An item ID drawn with a long tail: a few items get most of the sales
+    public int popularItemId(SplittableRandom random) {
+        double u = random.nextDouble();
+        return 1 + (int) Math.min(itemCount - 1, (long) (itemCount * u * u * u));
+    }
+
+    public void writeTypes(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String type : TYPES) {
+                writer.write(type);
+                writer.newLine();
+            }
+        }
+    }
+
+    // item.txt: id,type,name,price,qty
+    public void writeItems(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int id = 1; id <= itemCount; id++) {
+                Item item = item(id);
+                writer.write(InventoryTableModel.formatId(id) + "," + item.type + "," + item.name + ","
+                        + InventoryTableModel.formatPrice(item.priceCents) + "," + item.quantity);
+                writer.newLine();
+            }
+        }
+    }
+
+    // sales_records.txt in the layout SalesJournal writes; returns the number of lines
+    public long writeSales(Path file, int count, LocalDate firstDay, LocalDate lastDay) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed ^ 0x5A1E5L);
+        long days = lastDay.toEpochDay() - firstDay.toEpochDay() + 1;
+        long shopSeconds = days * (CLOSING_SECOND - OPENING_SECOND);
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < count) {
+                // Spread tickets evenly over shop hours, with some jitter, so timestamps only move forward
+                long slot = shopSeconds * written / count;
+                long day = slot / (CLOSING_SECOND - OPENING_SECOND);
+                long second = OPENING_SECOND + slot % (CLOSING_SECOND - OPENING_SECOND);
+                String dateTime = firstDay.plusDays(day).atStartOfDay().plusSeconds(second).format(DATE_TIME_FORMAT);
+                int lines = (int) Math.min(count - written, 1 + random.nextInt(3));
+                for (int i = 0; i < lines; i++) {
+                    Item item = item(popularItemId(random));
+                    int quantity = random.nextInt(10) == 0 ? 2 + random.nextInt(9) : 1 + random.nextInt(2);
+                    double unitPrice = item.priceCents / 100.0;
+                    double total = item.priceCents * quantity / 100.0;
+                    writer.write(SalesJournal.toLine(new SaleRecord(SaleIdAllocator.format(++written), item.type, item.name,
+                            quantity, unitPrice, total, dateTime)));
+                    writer.newLine();
+                }
+            }
+        }
+        return written;
+    }
+
+    // The same deliveries twice: supply_ledger.txt (id,date,qty) and the legacy supply.txt (name,date,qty)
+    public void writeSupply(Path ledgerFile, Path legacyFile, int count, LocalDate firstDay, LocalDate lastDay) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed ^ 0x5199L);
+        long days = lastDay.toEpochDay() - firstDay.toEpochDay() + 1;
+        try (BufferedWriter ledger = Files.newBufferedWriter(ledgerFile, StandardCharsets.UTF_8);
+             BufferedWriter legacy = Files.newBufferedWriter(legacyFile, StandardCharsets.UTF_8)) {
+            for (long n = 0; n < count; n++) {
+                LocalDate date = firstDay.plusDays(days * n / count);
+                Item item = item(random.nextInt(2) == 0 ? popularItemId(random) : 1 + random.nextInt(itemCount));
+                int quantity = 5 * (1 + random.nextInt(40));
+                ledger.write(InventoryTableModel.formatId(item.id) + "," + date + "," + quantity);
+                ledger.newLine();
+                legacy.write(item.name + "," + date + "," + quantity);
+                legacy.newLine();
+            }
+        }
+    }
+
+    // A supplier CSV for BulkImporter, with a header; dates are the last week up to 'lastDay'
+    public void writeFeed(Path file, int rows, LocalDate lastDay) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed ^ 0xFEEDL);
+        int newItems = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("id,name,type,price,quantity,date");
+            writer.newLine();
+            for (int n = 0; n < rows; n++) {
+                String date = lastDay.minusDays(random.nextInt(7)).toString();
+                int quantity = 5 * (1 + random.nextInt(40));
+                int kind = random.nextInt(100);
+                String line;
+                if (kind < 60) {
+                    line = InventoryTableModel.formatId(1 + random.nextInt(itemCount)) + ",,,," + quantity + "," + date;
+                } else if (kind < 85) {
+                    // Suppliers do not always match our capitalisation
+                    line = "," + item(1 + random.nextInt(itemCount)).name.toUpperCase() + ",,," + quantity + "," + date;
+                } else if (kind < 98) {
+                    // Items past the catalog's last ID are new; some appear twice
+                    Item item = item(itemCount + 1 + (random.nextInt(4) == 0 && newItems > 0 ? random.nextInt(newItems) : newItems++));
+                    line = "," + item.name + "," + item.type + "," + InventoryTableModel.formatPrice(item.priceCents) + "," + quantity + "," + date;
+                } else {
+                    String[] bad = {"," + item(1).name + ",,,-5," + date, "999999999,,,,10," + date,
+                            InventoryTableModel.formatId(1) + ",,,,ten," + date, InventoryTableModel.formatId(1) + ",,,,10,30/06/2025",
+                            ",Unpriced Widget,CPU,," + quantity + "," + date};
+                    line = bad[random.nextInt(bad.length)];
+                }
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+}
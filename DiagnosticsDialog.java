@@ -0,0 +1,86 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+// Live view of the metrics registry: counters, gauges and latency percentiles,
+// refreshed every second while the dialog is open. "Export" writes the same
+// figures to metrics.prom in Prometheus text format on the persistence executor.
+public class DiagnosticsDialog extends JDialog {
+
+    private static final String EXPORT_FILE = "metrics.prom";
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final DefaultTableModel tableModel;
+    private final Timer refreshTimer;
+
+    public DiagnosticsDialog(Frame owner) {
+        super(owner, "Diagnostics", false);
+        setSize(800, 420);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        tableModel = new DefaultTableModel(new Object[]{"Metric", "Count / Value", "p50", "p90", "p99", "Max"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(tableModel);
+        table.getColumnModel().getColumn(0).setPreferredWidth(300);
+
+        JButton exportButton = new JButton("Export");
+        exportButton.addActionListener(e -> {
+            Path file = Paths.get(EXPORT_FILE);
+            PersistenceExecutor.get().submit(() -> {
+                Metrics.get().exportTo(file);
+                return file.toAbsolutePath();
+            }, written -> JOptionPane.showMessageDialog(this, "Metrics written to " + written, "Export", JOptionPane.INFORMATION_MESSAGE),
+                    ex -> JOptionPane.showMessageDialog(this, "Error exporting metrics: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE));
+        });
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(exportButton);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        // Metrics are only read while the dialog is showing
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+
+    private void refresh() {
+        List<Metrics.Metric> metrics = Metrics.get().getAll();
+        tableModel.setRowCount(metrics.size());
+        for (int row = 0; row < metrics.size(); row++) {
+            Metrics.Metric metric = metrics.get(row);
+            tableModel.setValueAt(metric.getName(), row, 0);
+            if (metric instanceof Metrics.Histogram) {
+                Metrics.Histogram histogram = (Metrics.Histogram) metric;
+                tableModel.setValueAt(histogram.getCount(), row, 1);
+                tableModel.setValueAt(millis(histogram.percentile(50)), row, 2);
+                tableModel.setValueAt(millis(histogram.percentile(90)), row, 3);
+                tableModel.setValueAt(millis(histogram.percentile(99)), row, 4);
+                tableModel.setValueAt(millis(histogram.getMaxNanos()), row, 5);
+            } else {
+                long value = metric instanceof Metrics.Counter ? ((Metrics.Counter) metric).get() : ((Metrics.Gauge) metric).get();
+                tableModel.setValueAt(value, row, 1);
+                for (int column = 2; column < 6; column++) tableModel.setValueAt("", row, column);
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for checkouts: sales and their stock deltas submitted from any
+// number of threads are gathered into a batch, then written with one sales journal append and one item log append, each
+// forced to disk once. Every submitter's future completes when the batch holding
+// its sale is durable, so a checkout is acknowledged only once it would survive
+// a crash, while the fsync cost is shared by the whole batch.
+// Sales are written before their stock deltas. Once the sales are on disk their
+// checkouts stand: if the delta write then fails, the item journal keeps the
+// deltas for its next write, and after a crash in between it takes them from
+// the sales file on the next load (see ItemJournal's sales mark).
+// The item journal's other entries (edits, restocks) are routed through the
+// same queue (see ItemJournal.submit), so the item log is written in the order
+// changes were made; a batch's checkpoint, when one falls due, runs on the
+// persistence thread rather than here.
+//
+// A batch is everything that queued up while the previous batch was being
+// written. A positive window additionally waits that long after the first sale
+// for more to arrive; on disks with a cheap fsync that mostly adds latency.
+//
+// Used when -Dsales.fsync=group; the window is -Dsales.groupCommitMillis (default 0).
+public class GroupCommitter implements Closeable {
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+
+    private static final Metrics.Counter BATCHES = Metrics.get().counter("pos_group_commits_total",
+            "Group commit batches written");
+    private static final Metrics.Counter BATCHED_SALES = Metrics.get().counter("pos_group_commit_sales_total",
+            "Sales written by group commit; divide by pos_group_commits_total for the mean batch size");
+    private static final Metrics.Counter DELTA_FAILURES = Metrics.get().counter("pos_group_commit_delta_failures_total",
+            "Batches whose sales were written but whose stock deltas were not (yet)");
+    private static final Metrics.Histogram WRITE_TIME = Metrics.get().histogram("pos_group_commit_write_seconds",
+            "Time to write and fsync one group commit batch");
+
+    // One checkout waiting for its batch
+    private static final class Pending {
+        final List<SaleRecord> sales;
+        final List<String> stockDeltas;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Pending(List<SaleRecord> sales, List<String> stockDeltas) {
+            this.sales = sales;
+            this.stockDeltas = stockDeltas;
+        }
+    }
+
+    // Marks the end of the queue on close
+    private static final Pending CLOSE = new Pending(List.of(), List.of());
+
+    private final SalesJournal salesJournal;
+    private final ItemJournal itemJournal;
+    private final long windowNanos;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // 'itemJournal' may be null when only sales are committed
+    public GroupCommitter(SalesJournal salesJournal, ItemJournal itemJournal, long windowMillis) {
+        this.salesJournal = salesJournal;
+        this.itemJournal = itemJournal;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.writer = new Thread(this::run, "group-commit");
+        writer.setDaemon(true);
+        writer.start();
+        if (itemJournal != null) itemJournal.writeThrough(this);
+    }
+
+    // Window from -Dsales.groupCommitMillis
+    public static long windowMillisFromProperty() {
+        return Long.getLong("sales.groupCommitMillis", 0);
+    }
+
+    // Queue a checkout's sale lines and stock delta entries (see ItemJournal.stockDeltaEntry);
+    // either list may be empty.
+    // The future completes once both are on disk, or once the sales are if only the deltas fail (they
+    // are written later, see the class comment); it completes exceptionally if nothing was written.
+    // Blocks while the queue is full, so a slow disk slows checkouts instead of piling up memory.
+    public CompletableFuture<Void> submit(List<SaleRecord> sales, List<String> stockDeltas) {
+        Pending pending = new Pending(new ArrayList<>(sales), new ArrayList<>(stockDeltas));
+        if (closed) {
+            pending.durable.completeExceptionally(new IOException("Group commit is closed"));
+            return pending.durable;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.durable.completeExceptionally(e);
+        }
+        return pending.durable;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Pending first = queue.take();
+                if (first == CLOSE) return;
+                batch.add(first);
+                // Take whatever else is queued, waiting out the window if there is one
+                long deadline = System.nanoTime() + windowNanos;
+                boolean closing = false;
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (next == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+                if (closing) return;
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        long started = System.nanoTime();
+        List<SaleRecord> sales = new ArrayList<>();
+        List<String> stockDeltas = new ArrayList<>();
+        int checkouts = 0;
+        for (Pending pending : batch) {
+            sales.addAll(pending.sales);
+            stockDeltas.addAll(pending.stockDeltas);
+            if (!pending.sales.isEmpty()) checkouts++;
+        }
+        try {
+            salesJournal.append(sales);
+        } catch (IOException | RuntimeException e) {
+            for (Pending pending : batch) pending.durable.completeExceptionally(e);
+            return;
+        }
+        Exception deltasFailed = null;
+        if (itemJournal != null) {
+            try {
+                itemJournal.append(stockDeltas, salesJournal, sales.isEmpty() ? null : sales.get(sales.size() - 1));
+            } catch (IOException | RuntimeException e) {
+                deltasFailed = e;
+                DELTA_FAILURES.increment();
+                System.err.println("Sales saved but their stock changes were not; they will be written later: " + e);
+            }
+        }
+        WRITE_TIME.recordSince(started);
+        BATCHES.increment();
+        BATCHED_SALES.add(checkouts);
+        for (Pending pending : batch) {
+            // An item change without a sale has nothing on disk to stand on, so it is reported like any failed save
+            if (deltasFailed != null && pending.sales.isEmpty()) pending.durable.completeExceptionally(deltasFailed);
+            else pending.durable.complete(null);
+        }
+    }
+
+    // Write everything already queued, then stop; later submits fail
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // A submit that raced with close may have queued behind the end marker
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            pending.durable.completeExceptionally(new IOException("Group commit is closed"));
+        }
+    }
+}
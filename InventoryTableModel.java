@@ -0,0 +1,222 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+// Inventory table backed by column arrays instead of Vector<Vector<Object>>.
+// Quantities and prices are kept as numbers (price in cents), type and name as
+// dictionary codes, so callers read typed values without re-parsing strings.
+public class InventoryTableModel extends AbstractTableModel {
+
+    // Column positions
+    public static final int ID = 0;
+    public static final int TYPE = 1;
+    public static final int NAME = 2;
+    public static final int PRICE = 3;
+    public static final int QUANTITY = 4;
+    public static final int WEEK_RATE = 5;
+    public static final int MONTH_RATE = 6;
+    public static final int QUARTER_RATE = 7;
+    public static final int DAYS_OF_STOCK = 8;
+
+    private static final String[] COLUMN_NAMES = {"ID", "Type", "Name", "Price", "Quantity", "7d/day", "30d/day", "90d/day", "Days Left"};
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringDictionary types = new StringDictionary();
+    private final StringDictionary names = new StringDictionary();
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] typeCodes = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private long[] priceCents = new long[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private SalesVelocity velocity; // rate columns are blank without one
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case QUANTITY: case DAYS_OF_STOCK: return Integer.class;
+            case WEEK_RATE: case MONTH_RATE: case QUARTER_RATE: return Double.class;
+            default: return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case ID: return getId(row);
+            case TYPE: return getType(row);
+            case NAME: return getName(row);
+            case PRICE: return formatPrice(priceCents[row]);
+            case QUANTITY: return quantities[row];
+            case WEEK_RATE: return rate(row, SalesVelocity.WEEK);
+            case MONTH_RATE: return rate(row, SalesVelocity.MONTH);
+            case QUARTER_RATE: return rate(row, SalesVelocity.QUARTER);
+            case DAYS_OF_STOCK: return daysOfStock(row);
+            default: throw new IllegalArgumentException("No column " + column);
+        }
+    }
+
+    // Show sales rates from 'velocity' in the rate columns; their values are read from it on paint
+    public void setSalesVelocity(SalesVelocity velocity) {
+        this.velocity = velocity;
+    }
+
+    // Units per day over the window, to one decimal; null (blank) without a velocity
+    private Double rate(int row, int window) {
+        if (velocity == null) return null;
+        return Math.round(velocity.getUnitsPerDay(getName(row), window) * 10) / 10.0;
+    }
+
+    // Days until the item runs out at its recent pace; null (blank) if it has not sold lately
+    private Integer daysOfStock(int row) {
+        if (velocity == null) return null;
+        int days = velocity.getDaysOfStock(getName(row), quantities[row]);
+        return days < 0 ? null : days;
+    }
+
+    // Typed getters
+    public String getId(int row) { return formatId(ids[row]); }
+    public int getNumericId(int row) { return ids[row]; }
+    public String getType(int row) { return types.decode(typeCodes[row]); }
+    public String getName(int row) { return names.decode(nameCodes[row]); }
+    public long getPriceCents(int row) { return priceCents[row]; }
+    public int getQuantity(int row) { return quantities[row]; }
+
+    // Append an item and notify listeners
+    public void addItem(int id, String type, String name, long price, int quantity) {
+        append(id, type, name, price, quantity);
+        fireTableRowsInserted(size - 1, size - 1);
+    }
+
+    // Replace the table contents with rows in item.txt layout (id,type,name,price,qty).
+    // Malformed rows are skipped. Fires a single change event. Returns the highest ID seen.
+    public int loadRows(List<String[]> rows) {
+        size = 0;
+        int maxId = 0;
+        for (String[] parts : rows) {
+            try {
+                int id = Integer.parseInt(parts[0].trim());
+                append(id, parts[1].trim(), parts[2].trim(), parsePrice(parts[3]), Integer.parseInt(parts[4].trim()));
+                if (id > maxId) maxId = id;
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed item: " + String.join(",", parts));
+            }
+        }
+        fireTableDataChanged();
+        return maxId;
+    }
+
+    // Append rows in item.txt layout (id,type,name,price,qty) with a single insert event,
+    // so listeners handle a bulk import as one range instead of row by row
+    public void addRows(List<String[]> rows) {
+        if (rows.isEmpty()) return;
+        int first = size;
+        for (String[] parts : rows) {
+            append(Integer.parseInt(parts[0].trim()), parts[1].trim(), parts[2].trim(), parsePrice(parts[3]), Integer.parseInt(parts[4].trim()));
+        }
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    // Whole-row update for a stock change (days left follows the quantity, and a sale also moves
+    // the rates), so the row repaints once; listeners keyed on ID, name or type skip it
+    private static final class StockUpdate extends TableModelEvent {
+        StockUpdate(TableModel source, int row) {
+            super(source, row, row);
+        }
+    }
+
+    // True if only the quantity and the columns derived from it changed
+    public static boolean isStockUpdate(TableModelEvent e) {
+        return e instanceof StockUpdate;
+    }
+
+    public void setQuantity(int row, int quantity) {
+        quantities[row] = quantity;
+        fireTableChanged(new StockUpdate(this, row));
+    }
+
+    public void updateItem(int row, String type, String name, long price, int quantity) {
+        typeCodes[row] = types.encode(type);
+        nameCodes[row] = names.encode(name);
+        priceCents[row] = price;
+        quantities[row] = quantity;
+        fireTableRowsUpdated(row, row);
+    }
+
+    public void removeRow(int row) {
+        int tail = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, tail);
+        System.arraycopy(typeCodes, row + 1, typeCodes, row, tail);
+        System.arraycopy(nameCodes, row + 1, nameCodes, row, tail);
+        System.arraycopy(priceCents, row + 1, priceCents, row, tail);
+        System.arraycopy(quantities, row + 1, quantities, row, tail);
+        size--;
+        fireTableRowsDeleted(row, row);
+    }
+
+    private void append(int id, String type, String name, long price, int quantity) {
+        if (size == ids.length) grow();
+        ids[size] = id;
+        typeCodes[size] = types.encode(type);
+        nameCodes[size] = names.encode(name);
+        priceCents[size] = price;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+
+    // IDs are shown and stored zero-padded to at least three digits.
+    // Same result as String.format("%03d", id) without the formatter, which dominated load and paint time.
+    public static String formatId(int id) {
+        return SaleIdAllocator.format(id);
+    }
+
+    // "1200", "1200.5" or "1200.50" -> cents; throws NumberFormatException on bad input.
+    // More than two decimals (e.g. a hand-edited item.txt) round half up to the cent, so the item still loads.
+    public static long parsePrice(String text) {
+        try {
+            return new BigDecimal(text.trim()).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Price is out of range: " + text);
+        }
+    }
+
+    // Cents -> the shortest plain form, e.g. 120000 -> "1200", 120050 -> "1200.5"
+    public static String formatPrice(long cents) {
+        if (cents % 100 == 0) return String.valueOf(cents / 100);
+        return BigDecimal.valueOf(cents, 2).stripTrailingZeros().toPlainString();
+    }
+}
@@ -1,32 +1,53 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.Vector;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class InventoryWindow extends JFrame {
 
     // UI Components
     private JTable table;
-    private DefaultTableModel model;
+    private InventoryTableModel model;
+    private ItemCatalog catalog;
+    private ItemSearchIndex searchIndex;
+    private TableRowSorter<InventoryTableModel> sorter;
+    private JComboBox<String> typeFilterCombo;
+    private volatile ItemJournal itemJournal;
+    private final CheckoutEngine checkoutEngine = new CheckoutEngine();
+    private volatile SupplyLedger supplyLedger;
     private JTextField nameField, priceField, quantityField, searchField;
     private JComboBox<String> typeCombo;
-    private JButton addButton, editButton, deleteButton, switchToSalesButton, searchButton, addTypeButton, addSupplyButton, viewSupplyButton;
+    private final ReorderMonitor reorderMonitor = new ReorderMonitor(checkoutEngine); // items at or below their reorder point
+    private JButton addButton, editButton, deleteButton, switchToSalesButton, searchButton, addTypeButton, addSupplyButton, viewSupplyButton, importButton, reorderPointButton;
 
-    // Unique ID tracker for new items
-    private int currentId = 1;
+    // Unique IDs for new items; never reuses the ID of a deleted item. Opened with the supply ledger.
+    private volatile SaleIdAllocator itemIds;
 
     // File paths
     private static final String ITEM_FILE = "item.txt";
     private static final String TYPE_FILE = "type.txt";
+    private static final String ITEM_LOG_FILE = "item.log";
+    private static final String SUPPLY_LEDGER_FILE = "supply_ledger.txt";
+    private static final String LEGACY_SUPPLY_FILE = "supply.txt";
+    private static final String REORDER_FILE = "reorder_points.txt";
+    private static final String ITEM_ID_FILE = "item_id.hwm";
+    static final String ALL_TYPES = "All types";
 
     // Constructor: Sets up the entire inventory GUI
     public InventoryWindow() {
         setTitle("Inventory System");
-        setSize(1000, 550);
+        setSize(1360, 550);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
@@ -34,39 +55,74 @@ public class InventoryWindow extends JFrame {
         typeCombo = new JComboBox<>();
         loadTypes();
 
-        // Table model (non-editable cells)
-        model = new DefaultTableModel(new Object[]{"ID", "Type", "Name", "Price", "Quantity"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+        // Table model (non-editable cells, column arrays)
+        model = new InventoryTableModel();
+        model.setSalesVelocity(SalesHistory.get().getVelocity()); // filled in by loadFromFile
+
+        // Index by ID and name, kept in sync with the model
+        catalog = new ItemCatalog(model);
+
+        // Type-ahead search over ID, type and name; drives the table's row filter
+        searchIndex = new ItemSearchIndex(model);
+
+        // Stock lives in the checkout engine; the table follows it from whichever thread sold or restocked
+        checkoutEngine.addStockListener((id, qty) -> {
+            if (SwingUtilities.isEventDispatchThread()) {
+                showStock(id);
+            } else {
+                SwingUtilities.invokeLater(() -> showStock(id));
             }
-        };
+        });
 
         table = new JTable(model);
+        sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
         JScrollPane tableScroll = new JScrollPane(table);
 
         // Top input form panel
-        JPanel inputPanel = new JPanel(new GridLayout(2, 6, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(2, 7, 10, 10));
         nameField = new JTextField();
         priceField = new JTextField();
         quantityField = new JTextField();
         searchField = new JTextField();
+        typeFilterCombo = new JComboBox<>();
+        typeFilterCombo.addItem(ALL_TYPES);
+        for (int i = 0; i < typeCombo.getItemCount(); i++) {
+            typeFilterCombo.addItem(typeCombo.getItemAt(i));
+        }
 
         inputPanel.add(new JLabel("Type"));
         inputPanel.add(new JLabel("Name"));
         inputPanel.add(new JLabel("Price"));
         inputPanel.add(new JLabel("Quantity"));
-        inputPanel.add(new JLabel("Search by ID"));
+        inputPanel.add(new JLabel("Search ID, type or name"));
+        inputPanel.add(new JLabel("Show type"));
         inputPanel.add(new JLabel());
 
         inputPanel.add(typeCombo);
         inputPanel.add(nameField);
         inputPanel.add(priceField);
         inputPanel.add(quantityField);
-        searchButton = new JButton("Search");
+        searchButton = new JButton("Go to ID");
         inputPanel.add(searchField);
+        inputPanel.add(typeFilterCombo);
         inputPanel.add(searchButton);
 
+        // Filter as the user types or picks a type
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void removeUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        });
+        typeFilterCombo.addActionListener(e -> applyFilter());
+
+        // New or renamed items must be matched against the current search too
+        model.addTableModelListener(e -> {
+            if (sorter.getRowFilter() != null && e.getColumn() < InventoryTableModel.QUANTITY && !InventoryTableModel.isStockUpdate(e)) {
+                SwingUtilities.invokeLater(this::applyFilter);
+            }
+        });
+
         // Button panel at the bottom
         JPanel buttonPanel = new JPanel();
         addButton = new JButton("Add");
@@ -76,22 +132,29 @@ public class InventoryWindow extends JFrame {
         addTypeButton = new JButton("Add Type");
         addSupplyButton = new JButton("Add Supply");
         viewSupplyButton = new JButton("Supply Record");
+        importButton = new JButton("Import CSV");
+        reorderPointButton = new JButton("Reorder Point");
+        JButton diagnosticsButton = new JButton("Diagnostics");
 
         addSupplyButton.setVisible(false); // Hidden unless item is selected
 
         // Add buttons to panel
         buttonPanel.add(addSupplyButton);
         buttonPanel.add(viewSupplyButton);
+        buttonPanel.add(reorderPointButton);
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(addTypeButton);
+        buttonPanel.add(importButton);
         buttonPanel.add(switchToSalesButton);
+        buttonPanel.add(diagnosticsButton);
 
         // Layout UI components
         add(tableScroll, BorderLayout.CENTER);
         add(inputPanel, BorderLayout.NORTH);
         add(buttonPanel, BorderLayout.SOUTH);
+        add(new ReorderPanel(reorderMonitor, model, catalog), BorderLayout.EAST);
 
         // Load existing inventory from file
         loadFromFile();
@@ -102,48 +165,35 @@ public class InventoryWindow extends JFrame {
         deleteButton.addActionListener(e -> deleteItem());
         switchToSalesButton.addActionListener(e -> switchToSales());
         addTypeButton.addActionListener(e -> addNewType());
+        importButton.addActionListener(e -> importFile());
+        reorderPointButton.addActionListener(e -> editReorderPoint());
         searchButton.addActionListener(e -> searchById());
+        diagnosticsButton.addActionListener(e -> new DiagnosticsDialog(this).setVisible(true));
+        Metrics.get().gauge("pos_inventory_items", "Items in the inventory table", model::getRowCount);
 
         // Open SupplyWindow for selected item
         addSupplyButton.addActionListener(e -> {
-            int row = table.getSelectedRow();
+            int row = selectedModelRow();
             if (row != -1) {
-                String itemName = model.getValueAt(row, 2).toString(); // Get item name
-                new SupplyWindow(itemName, model).setVisible(true);
+                new SupplyWindow(model.getNumericId(row), model.getName(row), checkoutEngine, supplyLedger, itemJournal).setVisible(true);
             }
         });
 
-        // Display supply record log
+        // Show the selected item's supply history, a page at a time
         viewSupplyButton.addActionListener(e -> {
-            File file = new File("supply.txt");
-            if (!file.exists()) {
-                JOptionPane.showMessageDialog(this, "No supply records found.");
+            int row = selectedModelRow();
+            if (row == -1) {
+                JOptionPane.showMessageDialog(this, "Select an item to view its supply record.", "No Row Selected", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                }
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "Error reading supply records: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            JTextArea textArea = new JTextArea(content.toString());
-            textArea.setEditable(false);
-            JScrollPane scrollPane = new JScrollPane(textArea);
-            scrollPane.setPreferredSize(new Dimension(500, 300));
-            JOptionPane.showMessageDialog(this, scrollPane, "Supply Records", JOptionPane.INFORMATION_MESSAGE);
+            new SupplyHistoryDialog(this, supplyLedger, model.getNumericId(row), model.getName(row)).setVisible(true);
         });
 
         // Handle table row selection
         table.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                int row = table.getSelectedRow();
+                int row = selectedModelRow();
                 if (row != -1) {
                     addSupplyButton.setVisible(true);
                     typeCombo.setSelectedItem(model.getValueAt(row, 1).toString());
@@ -154,37 +204,54 @@ public class InventoryWindow extends JFrame {
             }
         });
 
-        // Save inventory when program closes
-        Runtime.getRuntime().addShutdownHook(new Thread(this::saveToFile));
+        // Save inventory when program closes and wait for queued writes
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            saveToFile();
+            PersistenceExecutor.get().flush(10_000);
+            SalesHistory.get().shutdown();
+            SaleIdAllocator ids = itemIds;
+            if (ids != null) {
+                try {
+                    ids.close();
+                } catch (IOException e) {
+                    System.err.println("Could not save the next item ID: " + e.getMessage());
+                }
+            }
+        }));
     }
 
     // Add item or increase quantity if it exists
     private void addItem() {
         if (validateFields()) {
             String name = nameField.getText().trim();
-            boolean updated = false;
-
             // Check if item already exists
-            for (int i = 0; i < model.getRowCount(); i++) {
-                if (model.getValueAt(i, 2).toString().equalsIgnoreCase(name)) {
-                    int currentQty = Integer.parseInt(model.getValueAt(i, 4).toString());
-                    int addedQty = Integer.parseInt(quantityField.getText().trim());
-                    model.setValueAt(currentQty + addedQty, i, 4);
-                    logUpdate(name, addedQty);
-                    updated = true;
-                    break;
+            int existing = catalog.findRowByName(name);
+            if (existing != -1) {
+                int addedQty = Integer.parseInt(quantityField.getText().trim());
+                try {
+                    checkoutEngine.restock(model.getNumericId(existing), addedQty);
+                } catch (ArithmeticException e) {
+                    JOptionPane.showMessageDialog(this, "Adding " + addedQty + " units would put " + name + " over the largest stock a single item can hold.",
+                            "Input Error", JOptionPane.WARNING_MESSAGE);
+                    return;
                 }
-            }
-
-            // Add new item if not existing
-            if (!updated) {
-                model.addRow(new Object[]{
-                        String.format("%03d", currentId++),
-                        typeCombo.getSelectedItem().toString(),
-                        name,
-                        priceField.getText().trim(),
-                        quantityField.getText().trim()
-                });
+                logUpdate(name, addedQty);
+                journal(ItemJournal.stockDeltaEntry(model.getId(existing), addedQty));
+            } else {
+                // Add new item if not existing
+                int id;
+                try {
+                    id = (int) itemIds.nextId();
+                } catch (UncheckedIOException e) {
+                    showSaveError(e.getCause());
+                    return;
+                }
+                String type = typeCombo.getSelectedItem().toString();
+                long price = InventoryTableModel.parsePrice(priceField.getText());
+                int qty = Integer.parseInt(quantityField.getText().trim());
+                model.addItem(id, type, name, price, qty);
+                checkoutEngine.setStock(id, qty);
+                journal(ItemJournal.addEntry(InventoryTableModel.formatId(id), type, name, InventoryTableModel.formatPrice(price), qty));
             }
             clearFields();
             addSupplyButton.setVisible(false);
@@ -193,33 +260,35 @@ public class InventoryWindow extends JFrame {
 
     // Log item restocking activity
     private void logUpdate(String name, int qty) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("log.txt", true))) {
-            writer.write(name + ", added " + qty + " on " + LocalDate.now());
-            writer.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        String entry = name + ", added " + qty + " on " + LocalDate.now();
+        PersistenceExecutor.get().submit(() -> {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter("log.txt", true))) {
+                writer.write(entry);
+                writer.newLine();
+            }
+        }, null);
     }
 
     // Edit selected item
     private void editItem() {
-        int row = table.getSelectedRow();
+        int row = selectedModelRow();
         if (row != -1 && validateFields()) {
             String newName = nameField.getText().trim();
 
             // Prevent duplicate names
-            for (int i = 0; i < model.getRowCount(); i++) {
-                if (i != row && model.getValueAt(i, 2).toString().equalsIgnoreCase(newName)) {
-                    JOptionPane.showMessageDialog(this, "Item with this name already exists.", "Duplicate Item", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+            int existing = catalog.findRowByName(newName);
+            if (existing != -1 && existing != row) {
+                JOptionPane.showMessageDialog(this, "Item with this name already exists.", "Duplicate Item", JOptionPane.WARNING_MESSAGE);
+                return;
             }
 
             // Update fields
-            model.setValueAt(typeCombo.getSelectedItem().toString(), row, 1);
-            model.setValueAt(newName, row, 2);
-            model.setValueAt(priceField.getText().trim(), row, 3);
-            model.setValueAt(quantityField.getText().trim(), row, 4);
+            int qty = Integer.parseInt(quantityField.getText().trim());
+            model.updateItem(row, typeCombo.getSelectedItem().toString(), newName,
+                    InventoryTableModel.parsePrice(priceField.getText()), qty);
+            checkoutEngine.setStock(model.getNumericId(row), qty);
+            journal(ItemJournal.editEntry(model.getValueAt(row, 0), model.getValueAt(row, 1), model.getValueAt(row, 2),
+                    model.getValueAt(row, 3), model.getValueAt(row, 4)));
             clearFields();
         } else if (row == -1) {
             JOptionPane.showMessageDialog(this, "Select a row to edit.", "No Row Selected", JOptionPane.WARNING_MESSAGE);
@@ -228,11 +297,16 @@ public class InventoryWindow extends JFrame {
 
     // Delete selected item
     private void deleteItem() {
-        int row = table.getSelectedRow();
+        int row = selectedModelRow();
         if (row != -1) {
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this item?", "Confirm Deletion", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
+                String id = model.getId(row);
+                int numericId = model.getNumericId(row);
+                checkoutEngine.remove(numericId);
                 model.removeRow(row);
+                journal(ItemJournal.deleteEntry(id));
+                if (reorderMonitor.clearReorderPoint(numericId)) saveReorderPoints(); // the ID is never reused
                 clearFields();
             }
         } else {
@@ -240,10 +314,39 @@ public class InventoryWindow extends JFrame {
         }
     }
 
+    // Set the selected item's reorder point and the level a suggested order restocks it to
+    private void editReorderPoint() {
+        int row = selectedModelRow();
+        if (row == -1) {
+            JOptionPane.showMessageDialog(this, "Select an item to set its reorder point.", "No Row Selected", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        int id = model.getNumericId(row);
+        int[] current = reorderMonitor.getReorderPoint(id);
+        String input = JOptionPane.showInputDialog(this, "Reorder point and order-up-to level for " + model.getName(row)
+                + "\n(e.g. \"10,40\"; leave the level out for twice the point):", current[0] + "," + current[1]);
+        if (input == null || input.trim().isEmpty()) return;
+        try {
+            String[] parts = input.split(",");
+            int point = Integer.parseInt(parts[0].trim());
+            int orderUpTo = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0;
+            if (point < 0 || orderUpTo < 0 || (orderUpTo > 0 && orderUpTo <= point)) throw new NumberFormatException();
+            reorderMonitor.setReorderPoint(id, point, orderUpTo);
+            saveReorderPoints();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Enter a whole number, optionally followed by a larger order-up-to level.", "Input Error", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private void saveReorderPoints() {
+        PersistenceExecutor.get().submitCoalesced(REORDER_FILE, () -> reorderMonitor.savePoints(Paths.get(REORDER_FILE)),
+                e -> JOptionPane.showMessageDialog(this, "Error saving reorder points: " + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE));
+    }
+
     // Switch to SalesWindow view
     private void switchToSales() {
         saveToFile(); // Save changes before switching
-        SalesWindow salesWindow = new SalesWindow(this, model);
+        SalesWindow salesWindow = new SalesWindow(this, model, searchIndex, checkoutEngine, itemJournal);
         salesWindow.setVisible(true);
         this.setVisible(false);
     }
@@ -252,29 +355,117 @@ public class InventoryWindow extends JFrame {
     private void addNewType() {
         String newType = JOptionPane.showInputDialog(this, "Enter new type:");
         if (newType != null && !newType.trim().isEmpty()) {
-            typeCombo.addItem(newType.trim());
+            addType(newType.trim());
+        }
+    }
+
+    private void addType(String type) {
+        typeCombo.addItem(type);
+        typeFilterCombo.addItem(type);
+        PersistenceExecutor.get().submit(() -> {
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(TYPE_FILE, true))) {
-                writer.write(newType.trim());
+                writer.write(type);
                 writer.newLine();
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Error saving type: " + e.getMessage());
             }
+        }, e -> JOptionPane.showMessageDialog(this, "Error saving type: " + e.getMessage()));
+    }
+
+    // Bulk import a catalog or supplier CSV (see BulkImporter). Rows are validated in
+    // parallel and the item changes written as one item log append; once that is in, the
+    // import is applied, and its deliveries go to the supply ledger afterwards.
+    private void importFile() {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+
+        // Snapshot the catalog now; editing stays off until the import is in the table
+        BulkImporter importer = new BulkImporter(model, (int) itemIds.peekNextId(), LocalDate.now());
+        setEditingEnabled(false);
+        PersistenceExecutor.get().submit(() -> {
+            BulkImporter.Plan plan = importer.plan(file, Runtime.getRuntime().availableProcessors());
+            itemIds.skipTo(plan.nextId); // editing is off, so nothing else took these IDs meanwhile
+            BulkImporter.writeItems(plan, itemJournal);
+            return plan;
+        }, plan -> {
+            BulkImporter.apply(plan, model, checkoutEngine);
+            for (BulkImporter.NewItem item : plan.newItems) {
+                if (((DefaultComboBoxModel<String>) typeCombo.getModel()).getIndexOf(item.type) == -1) addType(item.type);
+            }
+            setEditingEnabled(true);
+            recordImportDeliveries(plan);
+        }, e -> {
+            setEditingEnabled(true);
+            JOptionPane.showMessageDialog(this, "Error importing " + file.getFileName() + ": " + e.getMessage()
+                    + "\nNo items or stock were changed.", "Import Error", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    // Add an applied import's deliveries to the supply ledger. The stock is already in, so a
+    // failure here is reported as such and can be retried without recording anything twice.
+    private void recordImportDeliveries(BulkImporter.Plan plan) {
+        PersistenceExecutor.get().submit(() -> {
+            BulkImporter.recordDeliveries(plan, supplyLedger);
+            return plan;
+        }, this::showImportSummary, e -> {
+            int choice = JOptionPane.showConfirmDialog(this, "The items and stock from " + plan.source.getFileName()
+                            + " were imported, but its " + plan.deliveries.size() + " deliveries could not be added to the supply ledger:\n"
+                            + e.getMessage() + "\n\nTry recording the deliveries again?",
+                    "Import Incomplete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                recordImportDeliveries(plan);
+            } else {
+                JOptionPane.showMessageDialog(this, "Supply history will not show the deliveries from " + plan.source.getFileName() + ".",
+                        "Import Incomplete", JOptionPane.WARNING_MESSAGE);
+            }
+        });
+    }
+
+    // What was imported, and the first rejected rows with their reasons
+    private void showImportSummary(BulkImporter.Plan plan) {
+        StringBuilder text = new StringBuilder(plan.summary()).append(String.format("%nRead in %.1f s", plan.elapsedNanos / 1e9));
+        if (!plan.rejections.isEmpty()) {
+            text.append(String.format("%n%nRejected rows are listed in %s%n", plan.rejectionsFile().toAbsolutePath()));
+            for (BulkImporter.Rejection rejection : plan.rejections.subList(0, Math.min(50, plan.rejections.size()))) {
+                text.append(String.format("%nLine %d: %s", rejection.line, rejection.reason));
+            }
+            if (plan.rejections.size() > 50) text.append(String.format("%n..."));
         }
+        JTextArea summary = new JTextArea(text.toString());
+        summary.setEditable(false);
+        JScrollPane scroll = new JScrollPane(summary);
+        scroll.setPreferredSize(new Dimension(560, plan.rejections.isEmpty() ? 80 : 300));
+        JOptionPane.showMessageDialog(this, scroll, "Import " + plan.source.getFileName(), JOptionPane.INFORMATION_MESSAGE);
     }
 
-    // Search item by ID
+    // Select the item whose ID is in the search field
     private void searchById() {
         String id = searchField.getText().trim();
-        for (int i = 0; i < model.getRowCount(); i++) {
-            if (model.getValueAt(i, 0).toString().equals(id)) {
-                table.setRowSelectionInterval(i, i);
-                table.scrollRectToVisible(table.getCellRect(i, 0, true));
-                return;
+        int row = catalog.findRowById(id);
+        if (row != -1) {
+            if (table.convertRowIndexToView(row) == -1) {
+                typeFilterCombo.setSelectedItem(ALL_TYPES); // the type filter was hiding it
             }
+            int viewRow = table.convertRowIndexToView(row);
+            table.setRowSelectionInterval(viewRow, viewRow);
+            table.scrollRectToVisible(table.getCellRect(viewRow, 0, true));
+            return;
         }
         JOptionPane.showMessageDialog(this, "Item ID not found.");
     }
 
+    // Show only items matching the search text and type
+    private void applyFilter() {
+        String type = (String) typeFilterCombo.getSelectedItem();
+        sorter.setRowFilter(searchIndex.filterFor(searchField.getText(), ALL_TYPES.equals(type) ? null : type));
+    }
+
+    // Selected row as a model index (the view may be filtered or sorted), or -1
+    private int selectedModelRow() {
+        int viewRow = table.getSelectedRow();
+        return viewRow == -1 ? -1 : table.convertRowIndexToModel(viewRow);
+    }
+
     // Validate item input fields
     private boolean validateFields() {
         if (nameField.getText().trim().isEmpty() || priceField.getText().trim().isEmpty() || quantityField.getText().trim().isEmpty()) {
@@ -282,7 +473,7 @@ public class InventoryWindow extends JFrame {
             return false;
         }
         try {
-            double price = Double.parseDouble(priceField.getText().trim());
+            long price = InventoryTableModel.parsePrice(priceField.getText());
             if (price < 0) throw new NumberFormatException();
             int qty = Integer.parseInt(quantityField.getText().trim());
             if (qty < 0) throw new NumberFormatException();
@@ -302,41 +493,95 @@ public class InventoryWindow extends JFrame {
         table.clearSelection();
     }
 
-    // Save inventory items to file
+    // Queue one change for the item log
+    private void journal(String entry) {
+        if (itemJournal == null) return;
+        itemJournal.submit(entry, this::showSaveError);
+    }
+
+    private void showSaveError(Exception e) {
+        JOptionPane.showMessageDialog(this, "Error saving inventory: " + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    // Fold logged changes into a fresh item.txt snapshot (in the background)
     void saveToFile() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(ITEM_FILE))) {
-            for (int i = 0; i < model.getRowCount(); i++) {
-                Vector<?> row = model.getDataVector().elementAt(i);
-                writer.write(String.join(",",
-                        row.get(0).toString(), row.get(1).toString(), row.get(2).toString(),
-                        row.get(3).toString(), row.get(4).toString()));
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error saving inventory: " + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
-        }
+        if (itemJournal == null) return;
+        itemJournal.submitCheckpoint(this::showSaveError);
     }
 
-    // Load inventory items from file
+    // Load inventory items from the snapshot plus any logged changes, off the EDT.
+    // Editing stays disabled until the rows are in the table.
     private void loadFromFile() {
-        File file = new File(ITEM_FILE);
-        if (!file.exists()) return;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            model.setRowCount(0);
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    model.addRow(new Object[]{parts[0], parts[1], parts[2], parts[3], parts[4]});
-                    int parsedId = Integer.parseInt(parts[0]);
-                    if (parsedId >= currentId) currentId = parsedId + 1;
-                }
-            }
-        } catch (IOException | NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Error loading inventory: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+        setEditingEnabled(false);
+        PersistenceExecutor.get().submit(() -> {
+            ItemJournal journal = new ItemJournal(ITEM_FILE, ITEM_LOG_FILE);
+            List<String[]> rows = journal.load();
+            itemJournal = journal;
+            reorderMonitor.loadPoints(Paths.get(REORDER_FILE));
+            SalesHistory.get().bootstrapVelocity(); // last 90 days only, read from the end of the file
+            return rows;
+        }, rows -> {
+            int maxId = model.loadRows(rows);
+            checkoutEngine.loadFrom(model);
+            reorderMonitor.rebuild(model); // the only full pass; later changes arrive one item at a time
+            showRecoveryWarning(itemJournal.getRecoveryWarning());
+            openSupplyLedger(maxId);
+        }, e -> JOptionPane.showMessageDialog(this, "Error loading inventory: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Open the item ID allocator and the supply ledger once items are loaded; a legacy supply.txt
+    // is migrated by item name. New IDs start past every ID in the catalog and in the ledger, so
+    // a delivery recorded for a deleted item never shows up in a new item's history.
+    // Editing is enabled once both are ready.
+    private void openSupplyLedger(int maxId) {
+        Map<String, Integer> idsByName = new HashMap<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            idsByName.put(ItemCatalog.normalize(model.getName(row)), model.getNumericId(row));
+        }
+        PersistenceExecutor.get().submit(() -> {
+            itemIds = SaleIdAllocator.open(Paths.get(ITEM_ID_FILE), maxId);
+            SupplyLedger ledger = SupplyLedger.open(Paths.get(SUPPLY_LEDGER_FILE), Paths.get(LEGACY_SUPPLY_FILE), idsByName);
+            itemIds.skipTo(ledger.maxItemId() + 1);
+            return ledger;
+        }, ledger -> {
+                    supplyLedger = ledger;
+                    setEditingEnabled(true);
+                    showRecoveryWarning(ledger.getRecoveryWarning());
+                }, e -> {
+                    setEditingEnabled(true);
+                    addSupplyButton.setEnabled(false);
+                    viewSupplyButton.setEnabled(false);
+                    importButton.setEnabled(false);
+                    if (itemIds == null) addButton.setEnabled(false);
+                    JOptionPane.showMessageDialog(this, "Error opening supply records: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+                });
+    }
+
+    // Tell the user a data file lost a torn last line when it was opened
+    private void showRecoveryWarning(String warning) {
+        if (warning != null) JOptionPane.showMessageDialog(this, warning, "Recovered File", JOptionPane.WARNING_MESSAGE);
+    }
+
+    // Copy an item's stock from the checkout engine into the table (EDT only)
+    private void showStock(int id) {
+        int row = catalog.findRowById(InventoryTableModel.formatId(id));
+        int qty = checkoutEngine.getStock(id);
+        if (row != -1 && qty >= 0 && model.getQuantity(row) != qty) {
+            model.setQuantity(row, qty);
         }
     }
 
+    private void setEditingEnabled(boolean enabled) {
+        addButton.setEnabled(enabled);
+        editButton.setEnabled(enabled);
+        deleteButton.setEnabled(enabled);
+        addSupplyButton.setEnabled(enabled);
+        viewSupplyButton.setEnabled(enabled);
+        importButton.setEnabled(enabled);
+        reorderPointButton.setEnabled(enabled);
+        switchToSalesButton.setEnabled(enabled);
+    }
+
     // Load item types from file or use default types
     private void loadTypes() {
         File file = new File(TYPE_FILE);
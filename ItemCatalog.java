@@ -0,0 +1,140 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Hash index over the inventory table for O(1) lookup by item ID and by name.
+// It listens to the table model, so adds, edits and deletes keep it in sync.
+public class ItemCatalog implements TableModelListener {
+
+    // Column positions in the inventory table
+    static final int ID_COLUMN = 0;
+    static final int NAME_COLUMN = 2;
+
+    private final TableModel model;
+
+    // Key -> row index
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final Map<String, Integer> rowByName = new HashMap<>();
+
+    // Keys currently indexed for each row, used to drop stale entries on update/delete
+    private final List<String> idKeys = new ArrayList<>();
+    private final List<String> nameKeys = new ArrayList<>();
+
+    public ItemCatalog(TableModel model) {
+        this.model = model;
+        rebuild();
+        model.addTableModelListener(this);
+    }
+
+    // Names are matched case-insensitively, ignoring surrounding spaces
+    public static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Row of the item with this ID, or -1 if none
+    public int findRowById(String id) {
+        Integer row = rowById.get(id.trim());
+        return row == null ? -1 : row;
+    }
+
+    // Row of the item with this name (case-insensitive), or -1 if none
+    public int findRowByName(String name) {
+        Integer row = rowByName.get(normalize(name));
+        return row == null ? -1 : row;
+    }
+
+    public TableModel getModel() {
+        return model;
+    }
+
+    public int size() {
+        return idKeys.size();
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+
+        // Structure or whole-table changes: start over
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            rebuild();
+            return;
+        }
+
+        switch (e.getType()) {
+            case TableModelEvent.INSERT:
+                for (int row = first; row <= last; row++) {
+                    idKeys.add(row, null);
+                    nameKeys.add(row, null);
+                }
+                shiftFrom(last + 1);
+                for (int row = first; row <= last; row++) {
+                    indexRow(row);
+                }
+                break;
+            case TableModelEvent.DELETE:
+                for (int row = last; row >= first; row--) {
+                    unindexRow(row);
+                    idKeys.remove(row);
+                    nameKeys.remove(row);
+                }
+                shiftFrom(first);
+                break;
+            default:
+                // A stock change or a cell outside the ID and name columns changes no key
+                int column = e.getColumn();
+                if (InventoryTableModel.isStockUpdate(e)) break;
+                if (column != TableModelEvent.ALL_COLUMNS && column != ID_COLUMN && column != NAME_COLUMN) break;
+                for (int row = first; row <= last && row < idKeys.size(); row++) {
+                    unindexRow(row);
+                    indexRow(row);
+                }
+                break;
+        }
+    }
+
+    // Re-index every row of the model
+    private void rebuild() {
+        rowById.clear();
+        rowByName.clear();
+        idKeys.clear();
+        nameKeys.clear();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            idKeys.add(null);
+            nameKeys.add(null);
+            indexRow(row);
+        }
+    }
+
+    private void indexRow(int row) {
+        String id = model.getValueAt(row, ID_COLUMN).toString().trim();
+        String name = normalize(model.getValueAt(row, NAME_COLUMN).toString());
+        idKeys.set(row, id);
+        nameKeys.set(row, name);
+        rowById.put(id, row);
+        rowByName.put(name, row);
+    }
+
+    private void unindexRow(int row) {
+        String id = idKeys.get(row);
+        String name = nameKeys.get(row);
+        if (id != null) rowById.remove(id, row);
+        if (name != null) rowByName.remove(name, row);
+    }
+
+    // Rows after an insert or delete moved, so point their keys at the new positions
+    private void shiftFrom(int start) {
+        for (int row = start; row < idKeys.size(); row++) {
+            String id = idKeys.get(row);
+            String name = nameKeys.get(row);
+            if (id != null) rowById.put(id, row);
+            if (name != null) rowByName.put(name, row);
+        }
+    }
+}
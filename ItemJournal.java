@@ -0,0 +1,516 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import javax.swing.SwingUtilities;
+
+// Write-ahead delta log for item.txt.
+// Every item mutation appends one short line to item.log; the log is folded into a
+// fresh item.txt snapshot every CHECKPOINT_INTERVAL entries and on exit.
+// Each checkpoint also writes item.bin (see BinarySnapshot), which load() prefers
+// over parsing item.txt while the two still match.
+// The journal keeps its own copy of the rows, so checkpoints never read the Swing model
+// and can run on the persistence thread.
+//
+// Log lines:
+//   ADD,id,type,name,price,qty
+//   EDIT,id,type,name,price,qty
+//   DEL,id
+//   QTY,id,delta
+//   SOLD,offset,saleId,salesFile
+//
+// QTY entries are not idempotent, so a log must never be replayed onto a snapshot that
+// already holds it. A checkpoint renames item.log to item.log.old before moving the new
+// item.txt into place and deletes it afterwards; an item.log.old found at open therefore
+// belongs to a checkpoint that was cut short, which is finished rather than replayed.
+//
+// EDIT and ADD entries set absolute values, so entries must reach the log in the order the
+// changes were made in memory. Once a GroupCommitter is writing sale deltas, submit() sends
+// entries through it too, so an edit queued before a sale is never written after the sale's delta.
+//
+// A sale is written to the sales file before its QTY entries reach this log. The SOLD mark written
+// with those entries says the sales file is covered up to 'offset', the end of sale 'saleId'; load()
+// adds the stock changes of any complete sales after it, so a crash or a failed write between the
+// two files cannot leave a recorded sale without its stock change. Every checkpoint starts the new
+// log with the current mark.
+public class ItemJournal implements Closeable {
+
+    // Entries after which the log is folded into the snapshot
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final Metrics.Histogram LOAD_TIME = Metrics.get().histogram("pos_item_load_seconds",
+            "Time to read the item snapshot and replay the item log");
+    private static final Metrics.Histogram APPEND_TIME = Metrics.get().histogram("pos_item_log_append_seconds",
+            "Time to write (and fsync) one batch of item log entries");
+    private static final Metrics.Counter ENTRIES = Metrics.get().counter("pos_item_log_entries_total",
+            "Item log entries written");
+    private static final Metrics.Histogram CHECKPOINT_TIME = Metrics.get().histogram("pos_item_checkpoint_seconds",
+            "Time to fold the item log into a new item.txt snapshot");
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Path oldLogPath;
+    private final Path tempSnapshotPath;
+    private final Path binaryPath;
+    private final SalesJournal.SyncPolicy syncPolicy;
+    private FileChannel logChannel; // reopened by each checkpoint
+    private final LinkedHashMap<String, String[]> rows = new LinkedHashMap<>();
+    private int entriesSinceCheckpoint;
+    private final long recoveredBytes; // torn last entry dropped at open
+    private String salesMark; // last SOLD entry, or null before the first sale
+    // Entries of a write that failed after its sales were saved, and the mark that goes with them.
+    // They are written ahead of the next entries, so the mark never passes a sale whose deltas are missing.
+    private final List<String> unsaved = new ArrayList<>();
+    private String unsavedMark;
+
+    // Queues entries on the persistence thread; entries queued together share one write + fsync
+    private final PersistenceExecutor.Batcher<String> writes = PersistenceExecutor.get().batcher(this::append);
+    private GroupCommitter committer; // set once group commit starts; guarded by 'writes'
+
+    public ItemJournal(String snapshotFile, String logFile) throws IOException {
+        this.snapshotPath = Paths.get(snapshotFile);
+        this.logPath = Paths.get(logFile);
+        this.oldLogPath = logPath.resolveSibling(logPath.getFileName() + ".old");
+        this.tempSnapshotPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        this.binaryPath = BinarySnapshot.snapshotPathFor(snapshotPath);
+        String fsync = System.getProperty("item.fsync", "append");
+        this.syncPolicy = fsync.equalsIgnoreCase("none") ? SalesJournal.SyncPolicy.NONE : SalesJournal.SyncPolicy.ON_APPEND;
+        finishCheckpoint();
+        this.recoveredBytes = SalesJournal.recover(logPath, ItemJournal::isWellFormed);
+        this.logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Metrics.get().fileSizeGauge(snapshotPath);
+        Metrics.get().fileSizeGauge(logPath);
+    }
+
+    // Read the snapshot and replay the log on top of it. Returns a copy of the rows in file order.
+    public synchronized List<String[]> load() throws IOException {
+        long started = System.nanoTime();
+        rows.clear();
+        salesMark = null;
+        List<String[]> fromBinary = BinarySnapshot.readItems(binaryPath, snapshotPath);
+        if (fromBinary != null) {
+            for (String[] row : fromBinary) rows.put(row[0], row);
+        } else if (Files.exists(snapshotPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length == 5) rows.put(parts[0], parts);
+                }
+            }
+            // item.txt was edited by hand or has no binary copy yet: make one for the next start
+            writeBinarySnapshot();
+        }
+
+        entriesSinceCheckpoint = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                apply(line);
+                if (!isSalesMark(line)) entriesSinceCheckpoint++;
+            }
+        }
+        catchUpSales();
+
+        List<String[]> copy = new ArrayList<>(rows.size());
+        for (String[] row : rows.values()) copy.add(row.clone());
+        LOAD_TIME.recordSince(started);
+        return copy;
+    }
+
+    // Warning to show if opening cut off a torn last log entry, else null
+    public String getRecoveryWarning() {
+        return SalesJournal.recoveryWarning(logPath, recoveredBytes);
+    }
+
+    // True if the line is an entry replay() can apply
+    static boolean isWellFormed(String line) {
+        String[] parts = line.split(",");
+        switch (parts[0]) {
+            case "ADD":
+            case "EDIT":
+                return parts.length == 6;
+            case "DEL":
+                return parts.length == 2;
+            case "QTY":
+                if (parts.length != 3) return false;
+                try {
+                    Integer.parseInt(parts[2]);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            case "SOLD":
+                parts = line.split(",", 4);
+                if (parts.length != 4 || parts[3].isEmpty()) return false;
+                try {
+                    Long.parseLong(parts[1]);
+                    Long.parseLong(parts[2]);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isSalesMark(String line) {
+        return line.startsWith("SOLD,") && isWellFormed(line);
+    }
+
+    // Apply one log line to the rows, or take it as the new sales mark
+    private void apply(String line) {
+        if (isSalesMark(line)) salesMark = line;
+        else replay(rows, line);
+    }
+
+    private static void replay(Map<String, String[]> rows, String line) {
+        String[] parts = line.split(",");
+        try {
+            switch (parts[0]) {
+                case "ADD":
+                case "EDIT":
+                    if (parts.length == 6) {
+                        String[] row = {parts[1], parts[2], parts[3], parts[4], parts[5]};
+                        rows.put(row[0], row);
+                        return;
+                    }
+                    break;
+                case "DEL":
+                    if (parts.length == 2) {
+                        rows.remove(parts[1]);
+                        return;
+                    }
+                    break;
+                case "QTY":
+                    if (parts.length == 3) {
+                        String[] row = rows.get(parts[1]);
+                        if (row != null) {
+                            row[4] = String.valueOf(Integer.parseInt(row[4].trim()) + Integer.parseInt(parts[2]));
+                        }
+                        return;
+                    }
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the warning
+        }
+        System.err.println("Skipping malformed line in item log: " + line);
+    }
+
+    public static String addEntry(Object id, Object type, Object name, Object price, Object qty) {
+        return "ADD," + join(id, type, name, price, qty);
+    }
+
+    public static String editEntry(Object id, Object type, Object name, Object price, Object qty) {
+        return "EDIT," + join(id, type, name, price, qty);
+    }
+
+    public static String deleteEntry(Object id) {
+        return "DEL," + id;
+    }
+
+    public static String stockDeltaEntry(Object id, int delta) {
+        return "QTY," + id + "," + delta;
+    }
+
+    // Log an entry in the background; onError is called on the EDT if the write fails
+    public void submit(String entry, Consumer<Exception> onError) {
+        synchronized (writes) {
+            if (committer == null) {
+                writes.add(entry, null, onError);
+                return;
+            }
+            committer.submit(List.of(), List.of(entry)).whenComplete((done, e) -> {
+                if (e == null) return;
+                if (onError == null) e.printStackTrace();
+                else SwingUtilities.invokeLater(() -> onError.accept(e instanceof Exception ? (Exception) e : new IOException(e)));
+            });
+        }
+    }
+
+    // Send later submits through the group committer that writes sale deltas, after writing
+    // whatever is still queued here, so the log keeps one order
+    void writeThrough(GroupCommitter committer) {
+        synchronized (writes) {
+            writes.flush();
+            this.committer = committer;
+        }
+    }
+
+    // Checkpoint in the background; back-to-back requests collapse into one rewrite
+    public void submitCheckpoint(Consumer<Exception> onError) {
+        PersistenceExecutor.get().submitCoalesced("item-checkpoint:" + snapshotPath, () -> {
+            if (hasPendingChanges()) checkpoint();
+        }, onError);
+    }
+
+    private static String join(Object... values) {
+        StringBuilder sb = new StringBuilder();
+        for (Object value : values) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(value.toString());
+        }
+        return sb.toString();
+    }
+
+    // Append entries as one write, then apply them to the in-memory rows.
+    // A checkpoint that falls due runs here only on the persistence thread; any other caller
+    // (the group committer, server requests) hands it to the persistence thread instead of
+    // holding up the tills waiting on it.
+    public void append(List<String> entries) throws IOException {
+        append(entries, null, null);
+    }
+
+    // Append the stock deltas of sales just written to 'sales', the last being 'lastSale', with a mark
+    // covering the sales file up to its current end; no other sale may be appended to it in between.
+    // 'entries' may hold other entries too, which keep their order. If the write fails the sales are
+    // already saved, so the entries are kept and written ahead of the next append; should the process
+    // stop first, load() takes the stock changes from the sales file instead.
+    public void append(List<String> entries, SalesJournal sales, SaleRecord lastSale) throws IOException {
+        boolean due;
+        synchronized (this) {
+            String mark = lastSale != null ? salesMark(sales, lastSale) : unsavedMark;
+            List<String> batch = new ArrayList<>(unsaved);
+            batch.addAll(entries);
+            if (mark != null) batch.add(mark);
+            try {
+                due = write(batch);
+            } catch (IOException | RuntimeException e) {
+                if (mark != null) {
+                    unsaved.addAll(entries);
+                    unsavedMark = mark;
+                }
+                throw e;
+            }
+            unsaved.clear();
+            unsavedMark = null;
+        }
+        if (!due) return;
+        if (!PersistenceExecutor.onPersistenceThread()) {
+            submitCheckpoint(null);
+            return;
+        }
+        // The entries are on disk, so a failed checkpoint does not fail the append; it is tried
+        // again with the next append and on exit
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not checkpoint " + snapshotPath + ", will retry: " + e);
+        }
+    }
+
+    // SOLD entry for a sales file that now ends with 'lastSale'; the file is named relative to the log
+    private String salesMark(SalesJournal sales, SaleRecord lastSale) throws IOException {
+        Path file = logPath.toAbsolutePath().getParent().relativize(sales.getPath().toAbsolutePath());
+        return "SOLD," + sales.size() + "," + lastSale.getSalesId() + "," + file;
+    }
+
+    // True if a checkpoint is due
+    private synchronized boolean write(List<String> entries) throws IOException {
+        if (entries.isEmpty()) return false;
+        long started = System.nanoTime();
+        writeLines(entries);
+        APPEND_TIME.recordSince(started);
+        ENTRIES.add(entries.size());
+        for (String entry : entries) {
+            apply(entry);
+        }
+        entriesSinceCheckpoint += entries.size();
+        return entriesSinceCheckpoint >= CHECKPOINT_INTERVAL;
+    }
+
+    private void writeLines(List<String> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String entry : entries) {
+            lines.append(entry).append(LINE_SEPARATOR);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        long before = logChannel.size();
+        try {
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            if (syncPolicy == SalesJournal.SyncPolicy.ON_APPEND) {
+                logChannel.force(false);
+            }
+        } catch (IOException e) {
+            // Cut off any part that landed, so writing these entries again cannot apply one twice
+            try {
+                logChannel.truncate(before);
+            } catch (IOException truncateFailed) {
+                e.addSuppressed(truncateFailed);
+            }
+            throw e;
+        }
+    }
+
+    // Add the stock changes of complete sales after the mark: the process stopped before their
+    // deltas reached the log. The mark's sale is looked for at its offset first, and anywhere in
+    // the file if that misses (the file was compacted since).
+    private void catchUpSales() throws IOException {
+        if (salesMark == null) return;
+        String[] mark = salesMark.split(",", 4);
+        long offset = Long.parseLong(mark[1]);
+        Path salesPath = logPath.toAbsolutePath().getParent().resolve(mark[3]);
+        if (!Files.exists(salesPath)) return;
+        List<SaleRecord> sales = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        if (!salesAfter(salesPath, Math.max(0, offset - 4096), offset, mark[2], sales, ends)
+                && !salesAfter(salesPath, 0, -1, mark[2], sales, ends)) {
+            System.err.println("Sale " + mark[2] + " is no longer in " + salesPath + "; later sales were not checked against the stock");
+            return;
+        }
+        if (sales.isEmpty()) return;
+
+        Map<String, String> idByItem = new HashMap<>();
+        for (String[] row : rows.values()) idByItem.putIfAbsent(row[1] + "," + row[2], row[0]);
+        List<String> entries = new ArrayList<>();
+        for (SaleRecord sale : sales) {
+            String id = idByItem.get(sale.getType() + "," + sale.getName());
+            if (id != null) entries.add(stockDeltaEntry(id, -sale.getQuantity()));
+        }
+        int last = sales.size() - 1;
+        entries.add("SOLD," + ends.get(last) + "," + sales.get(last).getSalesId() + "," + mark[3]);
+        write(entries);
+        System.err.println("Took " + sales.size() + " sale line(s) missing from " + logPath + " out of the stock");
+    }
+
+    // Collect the well-formed sales after sale 'saleId', and the offset just past each, reading from
+    // byte 'from'; with 'end' >= 0 the sale must end exactly there. False if the sale was not found.
+    private static boolean salesAfter(Path path, long from, long end, String saleId,
+                                      List<SaleRecord> sales, List<Long> ends) throws IOException {
+        boolean[] found = new boolean[1];
+        forEachLine(path, from, (line, lineEnd) -> {
+            SaleRecord sale = SalesJournal.parseLine(line);
+            if (sale == null) return;
+            if (found[0]) {
+                sales.add(sale);
+                ends.add(lineEnd);
+            } else if (sale.getSalesId().equals(saleId) && (end < 0 || lineEnd == end)) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    // Each newline-terminated line from byte 'from' on, with the offset just past it
+    private static void forEachLine(Path path, long from, ObjLongConsumer<String> action) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            in.skipNBytes(from);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = from;
+            for (int b; (b = in.read()) != -1; ) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8);
+                action.accept(text.endsWith("\r") ? text.substring(0, text.length() - 1) : text, position);
+                line.reset();
+            }
+        }
+    }
+
+    // True if the log holds changes not yet in the snapshot
+    public synchronized boolean hasPendingChanges() {
+        return entriesSinceCheckpoint > 0;
+    }
+
+    // Write the current rows as a new snapshot and start an empty log.
+    // The snapshot is written to item.txt.tmp and forced; then the log is set aside as item.log.old,
+    // the snapshot moved into place and the old log deleted, syncing the directory after each rename.
+    // A crash before the log is set aside keeps the old snapshot + log; after it, the next open
+    // finishes the checkpoint (see finishCheckpoint), so no entry is ever applied twice.
+    public synchronized void checkpoint() throws IOException {
+        long started = System.nanoTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(tempSnapshotPath, StandardCharsets.UTF_8)) {
+            for (String[] row : rows.values()) {
+                writer.write(String.join(",", row));
+                writer.newLine();
+            }
+        }
+        try (FileChannel ch = FileChannel.open(tempSnapshotPath, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+
+        try {
+            logChannel.force(true);
+            logChannel.close();
+            Files.move(logPath, oldLogPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SalesJournal.syncDirectory(logPath);
+            Files.move(tempSnapshotPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SalesJournal.syncDirectory(snapshotPath);
+        } finally {
+            // After a failure, later entries go to a fresh item.log; the next open sorts out the rest
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        // The mark goes into the new log before the old log that held it is deleted
+        if (salesMark != null) {
+            writeLines(List.of(salesMark));
+            logChannel.force(true);
+        }
+        Files.delete(oldLogPath);
+        SalesJournal.syncDirectory(oldLogPath);
+        entriesSinceCheckpoint = 0;
+        writeBinarySnapshot();
+        CHECKPOINT_TIME.recordSince(started);
+    }
+
+    // Complete a checkpoint cut short after item.log was set aside. Its snapshot was forced before
+    // the rename, so a leftover item.txt.tmp is moved into place; item.log.old is already in the
+    // snapshot either way and is deleted without being replayed, after its sales mark is put at the
+    // head of the new item.log.
+    private void finishCheckpoint() throws IOException {
+        if (!Files.exists(oldLogPath)) return;
+        if (Files.exists(tempSnapshotPath)) {
+            Files.move(tempSnapshotPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SalesJournal.syncDirectory(snapshotPath);
+        }
+        String mark = null;
+        try (BufferedReader reader = Files.newBufferedReader(oldLogPath, StandardCharsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (isSalesMark(line)) mark = line;
+            }
+        }
+        if (mark != null) {
+            Path tempLogPath = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            log.write((mark + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+            if (Files.exists(logPath)) log.write(Files.readAllBytes(logPath));
+            Files.write(tempLogPath, log.toByteArray());
+            try (FileChannel ch = FileChannel.open(tempLogPath, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+            Files.move(tempLogPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SalesJournal.syncDirectory(logPath);
+        }
+        Files.delete(oldLogPath);
+        SalesJournal.syncDirectory(oldLogPath);
+    }
+
+    // Refresh item.bin to match item.txt. Optional: if it fails, the next start reads the text.
+    private void writeBinarySnapshot() {
+        try {
+            BinarySnapshot.writeItems(binaryPath, new ArrayList<>(rows.values()), snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not write item snapshot " + binaryPath + ": " + e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        logChannel.close();
+    }
+}
@@ -0,0 +1,166 @@
+import javax.swing.RowFilter;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Type-ahead search over the inventory by ID, type and name.
+// Each item's normalized "id type name" text is split into trigrams; a posting
+// list per trigram holds the IDs of items containing it. A query of three or
+// more characters takes the shortest posting list among its trigrams and checks
+// each candidate's text, so the work depends on how many items share the
+// query's rarest trigram rather than on the catalog size.
+// Shorter queries scan the stored texts directly. A separate posting set per
+// type answers the type filter.
+// Like ItemCatalog, it follows the inventory model's events; all calls are on the EDT.
+public class ItemSearchIndex implements TableModelListener {
+
+    // Growable list of item IDs; entries for edited or deleted items are left in
+    // place and weeded out when a candidate's current text is checked
+    private static final class Postings {
+        int size;
+        int[] ids = new int[4];
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private final InventoryTableModel model;
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final Map<Integer, String> textById = new HashMap<>();
+    private final Map<Integer, String> typeById = new HashMap<>();
+    private final List<Integer> idByRow = new ArrayList<>(); // to know which item a deleted row held
+    private int stalePostings;
+
+    public ItemSearchIndex(InventoryTableModel model) {
+        this.model = model;
+        rebuild();
+        model.addTableModelListener(this);
+    }
+
+    // IDs of items whose ID, type or name contains 'query' (case-insensitive),
+    // restricted to 'type' unless it is null. An empty query matches every item of the type.
+    public BitSet search(String query, String type) {
+        String q = ItemCatalog.normalize(query);
+        BitSet typeIds = type == null ? null : byType.getOrDefault(ItemCatalog.normalize(type), new BitSet());
+        BitSet result = new BitSet();
+        if (q.isEmpty()) {
+            if (typeIds != null) return (BitSet) typeIds.clone();
+            for (int id : textById.keySet()) result.set(id);
+            return result;
+        }
+
+        if (q.length() < 3) {
+            for (Map.Entry<Integer, String> e : textById.entrySet()) {
+                if (e.getValue().contains(q)) result.set(e.getKey());
+            }
+        } else {
+            Postings rarest = null;
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                Postings p = trigrams.get(trigram(q, i));
+                if (p == null) return result; // some trigram appears in no item
+                if (rarest == null || p.size < rarest.size) rarest = p;
+            }
+            for (int i = 0; i < rarest.size; i++) {
+                int id = rarest.ids[i];
+                String text = textById.get(id);
+                if (text != null && text.contains(q)) result.set(id);
+            }
+        }
+        if (typeIds != null) result.and(typeIds);
+        return result;
+    }
+
+    // Row filter for search(query, type), or null (show everything) when neither is set.
+    // For a table whose model row r shows inventory row r (the inventory and sales tables).
+    public RowFilter<TableModel, Integer> filterFor(String query, String type) {
+        if (query.trim().isEmpty() && type == null) return null;
+        BitSet matchingIds = search(query, type);
+        return new RowFilter<TableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                return matchingIds.get(model.getNumericId(entry.getIdentifier()));
+            }
+        };
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            rebuild();
+            return;
+        }
+
+        switch (e.getType()) {
+            case TableModelEvent.INSERT:
+                for (int row = first; row <= last; row++) {
+                    idByRow.add(row, model.getNumericId(row));
+                    index(row);
+                }
+                break;
+            case TableModelEvent.DELETE:
+                for (int row = last; row >= first; row--) {
+                    unindex(idByRow.remove(row));
+                }
+                break;
+            default:
+                // Quantity and sales-rate changes do not affect search text
+                if (e.getColumn() >= InventoryTableModel.QUANTITY || InventoryTableModel.isStockUpdate(e)) return;
+                for (int row = first; row <= last && row < idByRow.size(); row++) {
+                    unindex(idByRow.get(row));
+                    index(row);
+                }
+                break;
+        }
+        // Too many dead postings: start over so lookups stay fast
+        if (stalePostings > 4 * Math.max(1024, textById.size())) rebuild();
+    }
+
+    private void rebuild() {
+        trigrams.clear();
+        byType.clear();
+        textById.clear();
+        typeById.clear();
+        idByRow.clear();
+        stalePostings = 0;
+        for (int row = 0; row < model.getRowCount(); row++) {
+            idByRow.add(model.getNumericId(row));
+            index(row);
+        }
+    }
+
+    private void index(int row) {
+        int id = model.getNumericId(row);
+        String type = ItemCatalog.normalize(model.getType(row));
+        String text = model.getId(row) + " " + type + " " + ItemCatalog.normalize(model.getName(row));
+        textById.put(id, text);
+        typeById.put(id, type);
+        byType.computeIfAbsent(type, k -> new BitSet()).set(id);
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.computeIfAbsent(trigram(text, i), k -> new Postings()).add(id);
+        }
+    }
+
+    private void unindex(int id) {
+        String text = textById.remove(id);
+        String type = typeById.remove(id);
+        if (type != null) byType.get(type).clear(id);
+        if (text != null) stalePostings += Math.max(0, text.length() - 2);
+    }
+
+    // Three UTF-16 chars packed into one key
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+}
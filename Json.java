@@ -0,0 +1,162 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough JSON for the HTTP API: parse() turns a document into Map / List /
+// String / BigDecimal / Boolean / null, quote() writes a string literal.
+// Throws IllegalArgumentException on malformed input.
+public final class Json {
+
+    private final String text;
+    private int at;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipWhitespace();
+        if (json.at != text.length()) throw json.error("Unexpected text after the value");
+        return value;
+    }
+
+    // A JSON string literal for 's', quotes included
+    public static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (at >= text.length()) throw error("Unexpected end of input");
+        char c = text.charAt(at);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        at++; // {
+        skipWhitespace();
+        if (peek('}')) return map;
+        while (true) {
+            skipWhitespace();
+            if (at >= text.length() || text.charAt(at) != '"') throw error("Expected a field name");
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            map.put(key, value());
+            skipWhitespace();
+            if (peek('}')) return map;
+            expect(',');
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        at++; // [
+        skipWhitespace();
+        if (peek(']')) return list;
+        while (true) {
+            list.add(value());
+            skipWhitespace();
+            if (peek(']')) return list;
+            expect(',');
+        }
+    }
+
+    private String string() {
+        at++; // opening quote
+        StringBuilder sb = new StringBuilder();
+        while (at < text.length()) {
+            char c = text.charAt(at++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (at >= text.length()) break;
+            char escaped = text.charAt(at++);
+            switch (escaped) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (at + 4 > text.length()) throw error("Bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Bad \\u escape");
+                    }
+                    at += 4;
+                    break;
+                default: sb.append(escaped); // \" \\ \/
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private BigDecimal number() {
+        int start = at;
+        while (at < text.length() && "+-0123456789.eE".indexOf(text.charAt(at)) >= 0) at++;
+        try {
+            return new BigDecimal(text.substring(start, at));
+        } catch (NumberFormatException e) {
+            throw error("Bad number");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, at)) throw error("Unexpected character '" + text.charAt(at) + "'");
+        at += word.length();
+        return value;
+    }
+
+    private boolean peek(char c) {
+        if (at < text.length() && text.charAt(at) == c) {
+            at++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) throw error("Expected '" + c + "'");
+    }
+
+    private void skipWhitespace() {
+        while (at < text.length() && Character.isWhitespace(text.charAt(at))) at++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + at);
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load test for the persistence layer.
+// Opens a data directory (for example one written by DatasetGenerator) the way
+// the application does - item journal, checkout engine, sales journal and time
+// index, supply ledger - and has several worker threads replay a mix of:
+//   sale    - checkout of one to three lines, sales journal append, stock deltas to the item journal
+//             (with --sync group both go through a GroupCommitter and the sale waits for its batch)
+//   restock - supply ledger record, engine restock, stock delta to the item journal
+//   report  - rollup of a random week of sales through the time index
+// At the end it prints throughput and p50/p90/p99/max latency per operation.
+// The files in the directory are changed; point it at a copy you can throw away.
+//
+// Usage: java LoadDriver [--dir generated-data] [--threads 4] [--seconds 30] [--warmup-seconds 5]
+//                        [--mix 80,15,5] [--sync append|none|group] [--group-window-ms 0] [--seed 7]
+public final class LoadDriver {
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] OPERATIONS = {"sale", "restock", "report"};
+
+    // Latencies of one operation on one thread, in nanoseconds (also used by PosLoadTest)
+    static final class Samples {
+        int size;
+        long[] nanos = new long[1 << 14];
+
+        void add(long value) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = value;
+        }
+    }
+
+    private final InventoryTableModel model = new InventoryTableModel();
+    private final CheckoutEngine checkoutEngine = new CheckoutEngine();
+    private final ItemJournal itemJournal;
+    private final SalesJournal salesJournal;
+    private final GroupCommitter groupCommitter; // null unless --sync group
+    private final SupplyLedger supplyLedger;
+    private final SaleIdAllocator saleIds;
+    private final SalesStore sales;
+    private final SalesTimeIndex timeIndex;
+    private final int[] itemIds;
+    private final LongAdder rejectedSales = new LongAdder();
+    private volatile long reportedLines; // keeps report work observable
+
+    private LoadDriver(Path dir, SalesJournal.SyncPolicy syncPolicy, long groupWindowMillis) throws IOException {
+        long started = System.nanoTime();
+        itemJournal = new ItemJournal(dir.resolve("item.txt").toString(), dir.resolve("item.log").toString());
+        model.loadRows(itemJournal.load());
+        checkoutEngine.loadFrom(model);
+        itemIds = new int[model.getRowCount()];
+        Map<String, Integer> idsByName = new HashMap<>();
+        for (int row = 0; row < itemIds.length; row++) {
+            itemIds[row] = model.getNumericId(row);
+            idsByName.put(ItemCatalog.normalize(model.getName(row)), itemIds[row]);
+        }
+        if (itemIds.length == 0) throw new IOException("No items in " + dir.resolve("item.txt"));
+
+        Path salesPath = dir.resolve("sales_records.txt");
+        sales = SalesJournal.readAll(salesPath);
+        timeIndex = new SalesTimeIndex(sales);
+        salesJournal = new SalesJournal(salesPath.toString(), syncPolicy);
+        groupCommitter = syncPolicy == SalesJournal.SyncPolicy.GROUP ? new GroupCommitter(salesJournal, itemJournal, groupWindowMillis) : null;
+        saleIds = SaleIdAllocator.open(dir.resolve("sale_id.hwm"), SalesJournal.readLastSalesId(salesPath));
+        supplyLedger = SupplyLedger.open(dir.resolve("supply_ledger.txt"), dir.resolve("supply.txt"), idsByName);
+        System.out.printf("Opened %d items and %d sales in %.1f s%n", itemIds.length, sales.size(), (System.nanoTime() - started) / 1e9);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get("generated-data");
+        int threads = 4;
+        int seconds = 30;
+        int warmupSeconds = 5;
+        int[] mix = {80, 15, 5};
+        SalesJournal.SyncPolicy syncPolicy = SalesJournal.SyncPolicy.ON_APPEND;
+        long groupWindowMillis = 0;
+        long seed = 7;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[i + 1]); break;
+                case "--mix": mix = Arrays.stream(args[i + 1].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray(); break;
+                case "--sync": syncPolicy = parseSyncPolicy(args[i + 1]); break;
+                case "--group-window-ms": groupWindowMillis = Long.parseLong(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (mix.length != OPERATIONS.length) throw new IllegalArgumentException("--mix needs sale,restock,report weights");
+
+        LoadDriver driver = new LoadDriver(dir, syncPolicy, groupWindowMillis);
+        try {
+            if (warmupSeconds > 0) {
+                System.out.println("Warming up for " + warmupSeconds + " s");
+                driver.run(threads, warmupSeconds, mix, seed - 1);
+            }
+            System.out.println("Running " + threads + " threads for " + seconds + " s, mix sale/restock/report " + Arrays.toString(mix)
+                    + ", sync " + syncPolicy);
+            driver.rejectedSales.reset();
+            Samples[][] samples = driver.run(threads, seconds, mix, seed);
+            report(OPERATIONS, samples, seconds, "sales rejected for stock", driver.rejectedSales.sum());
+        } finally {
+            driver.close();
+        }
+    }
+
+    // Run the workers for 'seconds'; returns their samples, [thread][operation]
+    private Samples[][] run(int threads, int seconds, int[] mix, long seed) throws InterruptedException {
+        int totalWeight = Arrays.stream(mix).sum();
+        Samples[][] samples = new Samples[threads][OPERATIONS.length];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        long[] failures = new long[1];
+        for (int t = 0; t < threads; t++) {
+            Samples[] mine = samples[t];
+            for (int op = 0; op < mine.length; op++) mine[op] = new Samples();
+            SplittableRandom random = new SplittableRandom(seed * 31 + t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                    while (System.nanoTime() < deadline) {
+                        int pick = random.nextInt(totalWeight);
+                        int op = 0;
+                        while (pick >= mix[op]) pick -= mix[op++];
+                        long began = System.nanoTime();
+                        switch (op) {
+                            case 0: sale(random); break;
+                            case 1: restock(random); break;
+                            default: report(random); break;
+                        }
+                        mine[op].add(System.nanoTime() - began);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    synchronized (failures) {
+                        failures[0]++;
+                    }
+                }
+            }, "load-driver-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        if (failures[0] > 0) throw new IllegalStateException(failures[0] + " worker(s) failed");
+        return samples;
+    }
+
+    private void sale(SplittableRandom random) throws IOException {
+        int lines = 1 + random.nextInt(3);
+        int[] rows = new int[lines];
+        List<CheckoutEngine.Line> request = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            rows[i] = popularRow(random);
+            request.add(new CheckoutEngine.Line(itemIds[rows[i]], 1 + random.nextInt(2)));
+        }
+        if (!checkoutEngine.checkout(request).isCommitted()) {
+            rejectedSales.increment();
+            return;
+        }
+
+        String now = LocalDateTime.now().format(DATE_TIME_FORMAT);
+        List<SaleRecord> records = new ArrayList<>(lines);
+        List<String> deltas = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            CheckoutEngine.Line line = request.get(i);
+            int row = rows[i];
+            double unitPrice = model.getPriceCents(row) / 100.0;
+            records.add(new SaleRecord(saleIds.nextFormattedId(), model.getType(row), model.getName(row), line.quantity,
+                    unitPrice, model.getPriceCents(row) * line.quantity / 100.0, now));
+            deltas.add(ItemJournal.stockDeltaEntry(InventoryTableModel.formatId(line.itemId), -line.quantity));
+        }
+        if (groupCommitter != null) {
+            groupCommitter.submit(records, deltas).join();
+        } else {
+            synchronized (salesJournal) {
+                salesJournal.append(records);
+                itemJournal.append(deltas, salesJournal, records.get(records.size() - 1));
+            }
+        }
+        synchronized (sales) {
+            sales.addAll(records);
+            timeIndex.sync();
+        }
+    }
+
+    private void restock(SplittableRandom random) throws IOException {
+        int itemId = itemIds[random.nextInt(itemIds.length)];
+        int quantity = 5 * (1 + random.nextInt(40));
+        supplyLedger.record(itemId, LocalDate.now(), quantity);
+        checkoutEngine.restock(itemId, quantity);
+        itemJournal.append(List.of(ItemJournal.stockDeltaEntry(InventoryTableModel.formatId(itemId), quantity)));
+    }
+
+    // Totals for a random week between the first sale and today
+    private void report(SplittableRandom random) {
+        synchronized (sales) {
+            LocalDate today = LocalDate.now();
+            LocalDate first = sales.isEmpty() ? today : LocalDate.ofEpochDay(Math.floorDiv(sales.getEpochSecond(0), 86_400L));
+            long span = Math.max(1, today.toEpochDay() - first.toEpochDay() - 5);
+            LocalDate from = first.plusDays(random.nextLong(span));
+            SalesRollup rollup = SalesRollup.of(timeIndex.records(timeIndex.betweenDays(from, from.plusDays(6))));
+            reportedLines = rollup.getGrandTotals().getLines();
+        }
+    }
+
+    // Row of an item to sell; most sales go to a few items, like DatasetGenerator's history
+    private int popularRow(SplittableRandom random) {
+        double u = random.nextDouble();
+        return (int) Math.min(itemIds.length - 1, (long) (itemIds.length * u * u * u));
+    }
+
+    // Print count, rate and latency percentiles per operation; samples are [thread][operation]
+    static void report(String[] operations, Samples[][] samples, int seconds, String rejectedLabel, long rejected) {
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "op", "count", "ops/s", "p50 us", "p90 us", "p99 us", "max us");
+        long total = 0;
+        for (int op = 0; op < operations.length; op++) {
+            int count = 0;
+            for (Samples[] thread : samples) count += thread[op].size;
+            long[] all = new long[count];
+            int at = 0;
+            for (Samples[] thread : samples) {
+                System.arraycopy(thread[op].nanos, 0, all, at, thread[op].size);
+                at += thread[op].size;
+            }
+            Arrays.sort(all);
+            total += count;
+            System.out.printf("%-8s %10d %10.0f %10.1f %10.1f %10.1f %10.1f%n", operations[op], count, (double) count / seconds,
+                    percentile(all, 50), percentile(all, 90), percentile(all, 99), count == 0 ? 0 : all[count - 1] / 1000.0);
+        }
+        System.out.printf("total    %10d %10.0f   (%d %s)%n", total, (double) total / seconds, rejected, rejectedLabel);
+    }
+
+    // Nearest-rank percentile of sorted nanos, in microseconds
+    private static double percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1000.0;
+    }
+
+    private static SalesJournal.SyncPolicy parseSyncPolicy(String value) {
+        switch (value.toLowerCase()) {
+            case "none": return SalesJournal.SyncPolicy.NONE;
+            case "append": return SalesJournal.SyncPolicy.ON_APPEND;
+            case "group": return SalesJournal.SyncPolicy.GROUP;
+            default: throw new IllegalArgumentException("--sync must be append, none or group");
+        }
+    }
+
+    private void close() throws IOException {
+        if (groupCommitter != null) groupCommitter.close();
+        saleIds.close();
+        salesJournal.close();
+        supplyLedger.close();
+        itemJournal.checkpoint();
+        itemJournal.close();
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Process-wide counters, latency histograms and gauges.
+// Recording is a few uncontended adds (LongAdder, one bucket increment), so
+// instrumented code pays almost nothing when nobody is looking; gauges are
+// only evaluated when the metrics are read. Metrics are registered once, usually
+// as static fields of the class they measure, and can be read from any thread.
+// Names follow Prometheus conventions (pos_..._total, ..._seconds, ..._bytes)
+// and writePrometheus() emits the text exposition format.
+public final class Metrics {
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    // Registered metrics in registration order, keyed by full name (including any {labels})
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    public abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() { return name; }
+
+        // Name without the {labels} part
+        String baseName() {
+            int brace = name.indexOf('{');
+            return brace < 0 ? name : name.substring(0, brace);
+        }
+
+        abstract String type();
+    }
+
+    // Monotonic count of events
+    public static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        Counter(String name, String help) { super(name, help); }
+
+        public void increment() { count.increment(); }
+        public void add(long n) { count.add(n); }
+        public long get() { return count.sum(); }
+
+        @Override String type() { return "counter"; }
+    }
+
+    // A value read on demand, e.g. a row count or a file size
+    public static final class Gauge extends Metric {
+        private final LongSupplier value;
+
+        Gauge(String name, String help, LongSupplier value) {
+            super(name, help);
+            this.value = value;
+        }
+
+        // The current value, or -1 if it cannot be read right now
+        public long get() {
+            try {
+                return value.getAsLong();
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+
+        @Override String type() { return "gauge"; }
+    }
+
+    // Latency distribution in nanoseconds, HdrHistogram style: each power of two
+    // is split into SUB_BUCKETS linear buckets, so any recorded value is known to
+    // within 1/SUB_BUCKETS (12.5%) with a fixed 488 buckets from 1 ns to centuries.
+    public static final class Histogram extends Metric {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram(String name, String help) { super(name, help); }
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        // Record the time since 'startNanos' (from System.nanoTime())
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getSumNanos() { return sum.sum(); }
+        public long getMaxNanos() { return max.get(); }
+
+        // Upper bound of the bucket holding the p-th percentile (0 < p <= 100); 0 when empty
+        public long percentile(double p) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), getMaxNanos());
+            }
+            return getMaxNanos();
+        }
+
+        private static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int shift = exponent - SUB_BUCKET_BITS;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        @Override String type() { return "summary"; }
+    }
+
+    private Metrics() {
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help), Counter.class);
+    }
+
+    public Histogram histogram(String name, String help) {
+        return register(new Histogram(name, help), Histogram.class);
+    }
+
+    // A gauge registered again under the same name replaces the old one (e.g. a reopened window)
+    public Gauge gauge(String name, String help, LongSupplier value) {
+        Gauge gauge = new Gauge(name, help, value);
+        synchronized (metrics) {
+            metrics.put(name, gauge);
+        }
+        return gauge;
+    }
+
+    // Registering a name twice returns the first metric
+    private <M extends Metric> M register(M metric, Class<M> kind) {
+        synchronized (metrics) {
+            Metric existing = metrics.putIfAbsent(metric.name, metric);
+            if (existing == null) return metric;
+            if (!kind.isInstance(existing)) throw new IllegalArgumentException(metric.name + " is already a " + existing.type());
+            return kind.cast(existing);
+        }
+    }
+
+    public List<Metric> getAll() {
+        synchronized (metrics) {
+            return new ArrayList<>(metrics.values());
+        }
+    }
+
+    // Prometheus text exposition format; histograms are written as summaries in seconds.
+    // Metrics sharing a name (with different labels) are written together under one HELP/TYPE.
+    public void writePrometheus(Writer out) throws IOException {
+        Map<String, List<Metric>> families = new LinkedHashMap<>();
+        for (Metric metric : getAll()) {
+            families.computeIfAbsent(metric.baseName(), k -> new ArrayList<>()).add(metric);
+        }
+        for (Map.Entry<String, List<Metric>> family : families.entrySet()) {
+            Metric first = family.getValue().get(0);
+            out.write("# HELP " + family.getKey() + " " + first.help + "\n");
+            out.write("# TYPE " + family.getKey() + " " + first.type() + "\n");
+            for (Metric metric : family.getValue()) write(out, metric);
+        }
+    }
+
+    private static void write(Writer out, Metric metric) throws IOException {
+        if (metric instanceof Counter) {
+            out.write(metric.name + " " + ((Counter) metric).get() + "\n");
+        } else if (metric instanceof Gauge) {
+            out.write(metric.name + " " + ((Gauge) metric).get() + "\n");
+        } else {
+            Histogram histogram = (Histogram) metric;
+            for (double q : new double[]{0.5, 0.9, 0.99}) {
+                out.write(withLabel(metric.name, "quantile=\"" + q + "\"") + " " + seconds(histogram.percentile(q * 100)) + "\n");
+            }
+            out.write(withSuffix(metric.name, "_sum") + " " + seconds(histogram.getSumNanos()) + "\n");
+            out.write(withSuffix(metric.name, "_count") + " " + histogram.getCount() + "\n");
+        }
+    }
+
+    // Write the Prometheus text to 'file' (temp file, then moved into place, so a scraper never sees half a file)
+    public void exportTo(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writePrometheus(writer);
+        }
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // pos_file_size_bytes{file="<name>"}: size of a data file, 0 while it does not exist
+    public Gauge fileSizeGauge(Path file) {
+        return gauge("pos_file_size_bytes{file=\"" + file.getFileName() + "\"}", "Size of a data file", () -> fileSize(file));
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String withLabel(String name, String label) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name + "{" + label + "}" : name.substring(0, name.length() - 1) + "," + label + "}";
+    }
+
+    private static String withSuffix(String name, String suffix) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name + suffix : name.substring(0, brace) + suffix + name.substring(brace);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -1,7 +1,14 @@
 import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.Arrays;
 
 public class PCInventorySalesSystem {
-    public static void main(String[] args) {
+    // "--server [options]" starts the headless HTTP API (see PosServer) instead of the windows
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            PosServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         SwingUtilities.invokeLater(() -> new InventoryWindow().setVisible(true));
     }
 }
\ No newline at end of file
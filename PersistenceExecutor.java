@@ -0,0 +1,187 @@
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Single background thread that runs every file load and save, so the Swing
+// event dispatch thread never blocks on disk. Tasks run in submission order.
+// Completion and error callbacks are delivered on the EDT.
+public final class PersistenceExecutor {
+
+    // Bounded so a stalled disk can't queue unlimited work; when full the caller waits for room,
+    // which keeps writes in submission order
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final PersistenceExecutor INSTANCE = new PersistenceExecutor();
+
+    private final ThreadPoolExecutor executor;
+
+    // Latest not-yet-started task for each coalescing key
+    private final Map<String, IOTask> coalesced = new HashMap<>();
+
+    // A unit of disk work
+    public interface IOTask {
+        void run() throws Exception;
+    }
+
+    // Writes a batch of queued items in one go
+    public interface BatchWriter<T> {
+        void write(List<T> batch) throws Exception;
+    }
+
+    private PersistenceExecutor() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "persistence");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, pool) -> {
+                    try {
+                        pool.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+    }
+
+    public static PersistenceExecutor get() {
+        return INSTANCE;
+    }
+
+    // Run a load or save in the background; onSuccess gets the result on the EDT
+    public <T> void submit(Callable<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        executor.execute(() -> {
+            try {
+                T result = task.call();
+                if (onSuccess != null) SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+            } catch (Exception e) {
+                report(e, onError);
+            }
+        });
+    }
+
+    // Fire-and-forget write; errors go to onError on the EDT
+    public void submit(IOTask task, Consumer<Exception> onError) {
+        submit(() -> {
+            task.run();
+            return null;
+        }, null, onError);
+    }
+
+    // Run a write that supersedes any earlier queued write with the same key.
+    // Only the latest version runs, e.g. several checkpoint requests in a row do one rewrite.
+    public void submitCoalesced(String key, IOTask task, Consumer<Exception> onError) {
+        synchronized (coalesced) {
+            if (coalesced.put(key, task) != null) return; // already queued; it will pick up this task
+        }
+        executor.execute(() -> {
+            IOTask latest;
+            synchronized (coalesced) {
+                latest = coalesced.remove(key);
+            }
+            try {
+                latest.run();
+            } catch (Exception e) {
+                report(e, onError);
+            }
+        });
+    }
+
+    public <T> Batcher<T> batcher(BatchWriter<T> writer) {
+        return new Batcher<>(writer);
+    }
+
+    // True on the persistence thread itself, where waiting on the queue would deadlock
+    public static boolean onPersistenceThread() {
+        return Thread.currentThread().getName().equals("persistence");
+    }
+
+    // Wait until everything queued so far has run, e.g. from a shutdown hook
+    public void flush(long timeoutMillis) {
+        if (onPersistenceThread()) return;
+        Future<?> marker;
+        try {
+            marker = executor.submit(() -> { });
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        try {
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Persistence queue did not drain: " + e);
+        }
+    }
+
+    private static void report(Exception e, Consumer<Exception> onError) {
+        if (onError != null) {
+            SwingUtilities.invokeLater(() -> onError.accept(e));
+        } else {
+            e.printStackTrace();
+        }
+    }
+
+    // Collects items added while a write is queued or running and writes them together.
+    // Each item's callbacks fire once the batch containing it is written.
+    public final class Batcher<T> {
+        private final BatchWriter<T> writer;
+        private final List<Pending<T>> pending = new ArrayList<>();
+        private boolean scheduled;
+
+        private Batcher(BatchWriter<T> writer) {
+            this.writer = writer;
+        }
+
+        public void add(T item, Runnable onDone, Consumer<Exception> onError) {
+            synchronized (this) {
+                pending.add(new Pending<>(item, onDone, onError));
+                if (scheduled) return;
+                scheduled = true;
+            }
+            executor.execute(this::drain);
+        }
+
+        // Write what is pending now, on the calling thread; the queued drain then finds nothing
+        public void flush() {
+            drain();
+        }
+
+        private void drain() {
+            List<Pending<T>> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                scheduled = false;
+            }
+            List<T> items = new ArrayList<>(batch.size());
+            for (Pending<T> p : batch) items.add(p.item);
+            try {
+                writer.write(items);
+                for (Pending<T> p : batch) {
+                    if (p.onDone != null) SwingUtilities.invokeLater(p.onDone);
+                }
+            } catch (Exception e) {
+                for (Pending<T> p : batch) report(e, p.onError);
+            }
+        }
+    }
+
+    private static final class Pending<T> {
+        final T item;
+        final Runnable onDone;
+        final Consumer<Exception> onError;
+
+        Pending(T item, Runnable onDone, Consumer<Exception> onError) {
+            this.item = item;
+            this.onDone = onDone;
+            this.onError = onError;
+        }
+    }
+}
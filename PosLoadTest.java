@@ -0,0 +1,173 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load test for PosServer: many concurrent tills selling (and sometimes
+// restocking) over HTTP against localhost. Fetches up to --items items from
+// /items, then each thread loops POST /sales with one to three lines, favouring
+// a few popular items, and POST /restock for --restock-percent of requests.
+// Prints throughput and p50/p90/p99/max latency per request type; a 409
+// (insufficient stock) counts as a rejected sale, anything else non-2xx as an error.
+//
+// Start the server on a throwaway copy of the data, e.g.
+//   java DatasetGenerator --dir /tmp/pos --items 100000 --sales 1000000
+//   java -Dsales.fsync=group PosServer --dir /tmp/pos
+//   java PosLoadTest --threads 64 --seconds 30
+//
+// Usage: java PosLoadTest [--url http://127.0.0.1:8080] [--threads 32] [--seconds 20]
+//                         [--warmup-seconds 3] [--items 1000] [--restock-percent 10] [--seed 3]
+public final class PosLoadTest {
+
+    private static final String[] OPERATIONS = {"sale", "restock"};
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final List<String> itemIds;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicReference<String> firstError = new AtomicReference<>();
+
+    private PosLoadTest(String baseUrl, List<String> itemIds) {
+        this.baseUrl = baseUrl;
+        this.itemIds = itemIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://127.0.0.1:8080";
+        int threads = 32;
+        int seconds = 20;
+        int warmupSeconds = 3;
+        int items = 1000;
+        int restockPercent = 10;
+        long seed = 3;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url": url = args[i + 1]; break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--warmup-seconds": warmupSeconds = Integer.parseInt(args[i + 1]); break;
+                case "--items": items = Integer.parseInt(args[i + 1]); break;
+                case "--restock-percent": restockPercent = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        PosLoadTest test = new PosLoadTest(url, fetchItemIds(url, items));
+        System.out.println("Selling " + test.itemIds.size() + " items through " + url);
+        if (warmupSeconds > 0) {
+            System.out.println("Warming up for " + warmupSeconds + " s");
+            test.run(threads, warmupSeconds, restockPercent, seed - 1);
+        }
+        test.rejected.reset();
+        System.out.println("Running " + threads + " tills for " + seconds + " s, " + restockPercent + "% restocks");
+        LoadDriver.Samples[][] samples = test.run(threads, seconds, restockPercent, seed);
+        LoadDriver.report(OPERATIONS, samples, seconds, "sales rejected with 409", test.rejected.sum());
+        if (test.errors.sum() > 0) {
+            System.out.println(test.errors.sum() + " requests failed; first: " + test.firstError.get());
+            System.exit(1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> fetchItemIds(String url, int limit) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/items?limit=" + limit)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw new IllegalStateException("GET /items returned " + response.statusCode() + ": " + response.body());
+        List<String> ids = new ArrayList<>();
+        for (Object item : (List<Object>) ((Map<String, Object>) Json.parse(response.body())).get("items")) {
+            ids.add((String) ((Map<String, Object>) item).get("id"));
+        }
+        if (ids.isEmpty()) throw new IllegalStateException("The server has no items to sell");
+        return ids;
+    }
+
+    private LoadDriver.Samples[][] run(int threads, int seconds, int restockPercent, long seed) throws InterruptedException {
+        LoadDriver.Samples[][] samples = new LoadDriver.Samples[threads][OPERATIONS.length];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> tills = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            LoadDriver.Samples[] mine = samples[t];
+            for (int op = 0; op < mine.length; op++) mine[op] = new LoadDriver.Samples();
+            SplittableRandom random = new SplittableRandom(seed * 31 + t);
+            Thread till = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                while (System.nanoTime() < deadline) {
+                    int op = random.nextInt(100) < restockPercent ? 1 : 0;
+                    long began = System.nanoTime();
+                    if (op == 0 ? sale(random) : restock(random)) {
+                        mine[op].add(System.nanoTime() - began);
+                    }
+                }
+            }, "till-" + t);
+            tills.add(till);
+            till.start();
+        }
+        start.countDown();
+        for (Thread till : tills) till.join();
+        return samples;
+    }
+
+    // True if the request was answered (accepted or rejected for stock)
+    private boolean sale(SplittableRandom random) {
+        int lines = 1 + random.nextInt(3);
+        StringBuilder body = new StringBuilder("{\"lines\": [");
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) body.append(", ");
+            body.append("{\"id\": ").append(Json.quote(popularItem(random))).append(", \"quantity\": ").append(1 + random.nextInt(2)).append('}');
+        }
+        return post("/sales", body.append("]}").toString(), 201);
+    }
+
+    private boolean restock(SplittableRandom random) {
+        return post("/restock", "{\"id\": " + Json.quote(popularItem(random)) + ", \"quantity\": " + (50 + random.nextInt(150)) + "}", 200);
+    }
+
+    private boolean post(String path, String json, int expected) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == expected) return true;
+            if (response.statusCode() == 409) {
+                rejected.increment();
+                return true;
+            }
+            fail(path + " -> " + response.statusCode() + " " + response.body());
+        } catch (Exception e) {
+            fail(path + " -> " + e);
+        }
+        return false;
+    }
+
+    private void fail(String message) {
+        errors.increment();
+        firstError.compareAndSet(null, message);
+    }
+
+    // Most requests go to the first few items, like a real shop's best sellers
+    private String popularItem(SplittableRandom random) {
+        double u = random.nextDouble();
+        return itemIds.get((int) Math.min(itemIds.size() - 1, (long) (itemIds.size() * u * u * u)));
+    }
+}
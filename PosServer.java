@@ -0,0 +1,432 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Headless server mode: several tills share one inventory over a local HTTP/JSON API.
+// It opens the same files as the Swing application (item.txt + item.log, sales_records.txt,
+// supply_ledger.txt) and sells through the same CheckoutEngine, so run one or the other
+// against a data directory, not both.
+//
+//   GET  /items?q=&type=&limit=50   catalog search (ID, type or name), with stock
+//   GET  /items/{id}                one item
+//   GET  /stock/{id}                {"id": "002", "stock": 10}
+//   POST /sales    {"lines": [{"id": "002", "quantity": 2}, ...]}   -> 201 with the sale IDs and total
+//   POST /restock  {"id": "002", "quantity": 10, "date": "2025-06-30"}  (date optional, default today);
+//                  the reply carries a "warning" if the stock was saved but the supply history was not
+//   GET  /metrics                   Prometheus text
+//
+// Requests are validated like the Swing windows (processSale, SupplyWindow.addSupply);
+// errors come back as {"error": "..."} with 400, 404 or 409 (insufficient stock).
+// Each request runs on its own virtual thread when the JDK has them (21+), otherwise
+// on a fixed pool. A sale is acknowledged once it is on disk; with -Dsales.fsync=group
+// concurrent sales share their fsyncs through a GroupCommitter.
+//
+// Usage: java PosServer [--dir .] [--bind 127.0.0.1] [--port 8080]
+//    or: java PCInventorySalesSystem --server [same options]
+public final class PosServer {
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int FALLBACK_THREADS = 64;
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 1000;
+
+    private static final Metrics.Counter SALES = Metrics.get().counter("pos_sales_total", "Sales processed");
+    private static final Metrics.Counter SALE_LINES = Metrics.get().counter("pos_sale_lines_total", "Sale lines processed");
+    private static final Metrics.Counter SALES_REJECTED = Metrics.get().counter("pos_sales_rejected_total",
+            "Sales refused at checkout for insufficient stock");
+
+    // A request that cannot be served, with its HTTP status
+    private static final class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Handler {
+        String handle(HttpExchange exchange) throws Exception;
+    }
+
+    private final InventoryTableModel model = new InventoryTableModel(); // read-only after open; stock lives in the engine
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    private final CheckoutEngine checkoutEngine = new CheckoutEngine();
+    private final ItemJournal itemJournal;
+    private final SalesJournal salesJournal;
+    private final GroupCommitter groupCommitter; // null unless -Dsales.fsync=group
+    private final SaleIdAllocator saleIds;
+    private final SupplyLedger supplyLedger;
+    private final ItemSearchIndex searchIndex;
+
+    private PosServer(Path dir) throws IOException {
+        itemJournal = new ItemJournal(dir.resolve("item.txt").toString(), dir.resolve("item.log").toString());
+        model.loadRows(itemJournal.load());
+        checkoutEngine.loadFrom(model);
+        Map<String, Integer> idsByName = new HashMap<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            rowById.put(model.getNumericId(row), row);
+            idsByName.put(ItemCatalog.normalize(model.getName(row)), model.getNumericId(row));
+        }
+        searchIndex = new ItemSearchIndex(model);
+
+        Path salesPath = dir.resolve("sales_records.txt");
+        salesJournal = new SalesJournal(salesPath.toString());
+        groupCommitter = salesJournal.getSyncPolicy() == SalesJournal.SyncPolicy.GROUP
+                ? new GroupCommitter(salesJournal, itemJournal, GroupCommitter.windowMillisFromProperty()) : null;
+        saleIds = SaleIdAllocator.open(dir.resolve("sale_id.hwm"), SalesJournal.readLastSalesId(salesPath));
+        supplyLedger = SupplyLedger.open(dir.resolve("supply_ledger.txt"), dir.resolve("supply.txt"), idsByName);
+        Metrics.get().gauge("pos_inventory_items", "Items in the inventory table", model::getRowCount);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(".");
+        String bind = "127.0.0.1";
+        int port = 8080;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[i + 1]); break;
+                case "--bind": bind = args[i + 1]; break;
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        // The JDK server writes headers and body separately; with Nagle on, every response
+        // waits out the client's delayed ACK (about 40 ms). Must be set before the first server.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        PosServer pos = new PosServer(dir);
+        for (String warning : new String[]{pos.itemJournal.getRecoveryWarning(), pos.salesJournal.getRecoveryWarning(),
+                pos.supplyLedger.getRecoveryWarning()}) {
+            if (warning != null) System.out.println("Warning: " + warning);
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(bind, port), 1024);
+        pos.route(server, "/items", "GET", 200, pos::items);
+        pos.route(server, "/stock/", "GET", 200, pos::stock);
+        pos.route(server, "/sales", "POST", 201, pos::sale);
+        pos.route(server, "/restock", "POST", 200, pos::restock);
+        pos.route(server, "/metrics", "GET", 200, exchange -> {
+            StringWriter text = new StringWriter();
+            Metrics.get().writePrometheus(text);
+            return text.toString();
+        });
+        ExecutorService executor = requestExecutor();
+        server.setExecutor(executor);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            executor.shutdown();
+            try {
+                // Let requests still in flight finish their writes before the journals close
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) System.err.println("Requests still running at shutdown");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pos.close();
+        }));
+        System.out.println("POS server on http://" + bind + ":" + server.getAddress().getPort() + " with "
+                + pos.model.getRowCount() + " items, sales sync " + pos.salesJournal.getSyncPolicy());
+    }
+
+    // One virtual thread per request on JDK 21+ (looked up reflectively so this still builds on 17), else a fixed pool
+    static ExecutorService requestExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            System.out.println("Handling requests on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            System.out.println("No virtual threads on this JDK; handling requests on " + FALLBACK_THREADS + " threads");
+            return Executors.newFixedThreadPool(FALLBACK_THREADS);
+        }
+    }
+
+    // Register 'handler' for one method under 'path'; JSON errors, metrics and the response are handled here
+    private void route(HttpServer server, String path, String method, int successStatus, Handler handler) {
+        Metrics.Histogram time = Metrics.get().histogram("pos_http_request_seconds{path=\"" + path + "\"}", "Time to serve an API request");
+        server.createContext(path, exchange -> {
+            long started = System.nanoTime();
+            int status = successStatus;
+            String body;
+            try {
+                if (!exchange.getRequestMethod().equals(method)) throw new ApiException(405, "Use " + method);
+                body = handler.handle(exchange);
+            } catch (ApiException e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = error("Malformed request: " + e.getMessage());
+            } catch (Exception e) {
+                status = 500;
+                body = error("Server error: " + e);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            String type = path.equals("/metrics") && status == successStatus ? "text/plain; version=0.0.4" : "application/json";
+            exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            time.recordSince(started);
+        });
+    }
+
+    // GET /items?q=&type=&limit= or GET /items/{id}
+    private String items(HttpExchange exchange) throws ApiException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/items/")) return itemJson(rowOf(path.substring("/items/".length())));
+
+        Map<String, String> query = query(exchange);
+        int limit = DEFAULT_LIMIT;
+        if (query.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(query.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "limit must be a number");
+            }
+            if (limit <= 0 || limit > MAX_LIMIT) throw new ApiException(400, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        String type = query.get("type");
+        // The catalog does not change while serving, so the index is only ever read
+        BitSet ids = searchIndex.search(query.getOrDefault("q", ""), type == null || type.isEmpty() ? null : type);
+        StringBuilder json = new StringBuilder("{\"items\": [");
+        int count = 0;
+        for (int id = ids.nextSetBit(0); id >= 0 && count < limit; id = ids.nextSetBit(id + 1), count++) {
+            if (count > 0) json.append(", ");
+            json.append(itemJson(rowById.get(id)));
+        }
+        return json.append("], \"matches\": ").append(ids.cardinality()).append('}').toString();
+    }
+
+    // GET /stock/{id}
+    private String stock(HttpExchange exchange) throws ApiException {
+        int row = rowOf(exchange.getRequestURI().getPath().substring("/stock/".length()));
+        int id = model.getNumericId(row);
+        return "{\"id\": " + Json.quote(InventoryTableModel.formatId(id)) + ", \"stock\": " + checkoutEngine.getStock(id) + "}";
+    }
+
+    // POST /sales: same checks as SalesWindow.processSale, then one atomic checkout
+    private String sale(HttpExchange exchange) throws Exception {
+        Map<String, Object> request = jsonObject(exchange);
+        if (!(request.get("lines") instanceof List) || ((List<?>) request.get("lines")).isEmpty()) {
+            throw new ApiException(400, "No items selected for sale.");
+        }
+        List<Integer> rows = new ArrayList<>();
+        List<CheckoutEngine.Line> lines = new ArrayList<>();
+        for (Object entry : (List<?>) request.get("lines")) {
+            if (!(entry instanceof Map)) throw new ApiException(400, "Each line needs an id and a quantity");
+            Map<?, ?> line = (Map<?, ?>) entry;
+            int row = rowOf(String.valueOf(line.get("id")));
+            String name = model.getName(row);
+            Object quantity = line.get("quantity");
+            if (quantity == null) throw new ApiException(400, "Please enter a sale quantity for selected item: " + name);
+            int saleQty = intValue(quantity, "Invalid quantity for " + name + ". Please enter a valid number.");
+            if (saleQty <= 0) throw new ApiException(400, "Sale quantity for " + name + " must be greater than zero.");
+            int availableQty = checkoutEngine.getStock(model.getNumericId(row));
+            if (saleQty > availableQty) {
+                throw new ApiException(409, "Cannot sell " + saleQty + " units of " + name + ". Only " + availableQty + " available.");
+            }
+            rows.add(row);
+            lines.add(new CheckoutEngine.Line(model.getNumericId(row), saleQty));
+        }
+
+        // Another till may have sold the same items since the check above
+        CheckoutEngine.Result result = checkoutEngine.checkout(lines);
+        if (!result.isCommitted()) {
+            SALES_REJECTED.increment();
+            throw new ApiException(409, "Cannot complete the sale: item " + InventoryTableModel.formatId(result.getFailedItemId())
+                    + " has only " + Math.max(0, result.getAvailable()) + " available.");
+        }
+
+        String now = LocalDateTime.now().format(DATE_TIME_FORMAT);
+        List<SaleRecord> records = new ArrayList<>();
+        List<String> stockDeltas = new ArrayList<>();
+        try {
+            if (groupCommitter != null) {
+                addSaleLines(rows, lines, now, records, stockDeltas);
+                try {
+                    groupCommitter.submit(records, stockDeltas).join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            } else {
+                // IDs are taken and both writes made under the journal's lock, so the file stays in sales ID
+                // order and the item log's sales mark covers only sales whose deltas it has
+                synchronized (salesJournal) {
+                    addSaleLines(rows, lines, now, records, stockDeltas);
+                    salesJournal.append(records);
+                    try {
+                        itemJournal.append(stockDeltas, salesJournal, records.get(records.size() - 1));
+                    } catch (IOException | RuntimeException e) {
+                        // The sale is recorded; the item journal writes the deltas with its next entries
+                        System.err.println("Sale saved but its stock changes were not; they will be written later: " + e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // The sales write failed, so the sale was not recorded: put the stock it took back.
+            // (With group commit, a batch whose sales were written never fails here; see GroupCommitter.)
+            for (CheckoutEngine.Line line : lines) checkoutEngine.restock(line.itemId, line.quantity);
+            throw e;
+        }
+        long totalCents = 0;
+        StringBuilder saleIdsJson = new StringBuilder();
+        for (int n = 0; n < records.size(); n++) {
+            totalCents += model.getPriceCents(rows.get(n)) * lines.get(n).quantity;
+            if (n > 0) saleIdsJson.append(", ");
+            saleIdsJson.append(Json.quote(records.get(n).getSalesId()));
+        }
+        SALES.increment();
+        SALE_LINES.add(records.size());
+        return "{\"saleIds\": [" + saleIdsJson + "], \"total\": " + InventoryTableModel.formatPrice(totalCents) + "}";
+    }
+
+    // One sale line and one stock delta per requested line, each line taking the next sale ID
+    private void addSaleLines(List<Integer> rows, List<CheckoutEngine.Line> lines, String now,
+                              List<SaleRecord> records, List<String> stockDeltas) {
+        for (int n = 0; n < rows.size(); n++) {
+            int row = rows.get(n);
+            int saleQty = lines.get(n).quantity;
+            long priceCents = model.getPriceCents(row);
+            records.add(new SaleRecord(saleIds.nextFormattedId(), model.getType(row), model.getName(row), saleQty,
+                    priceCents / 100.0, priceCents * saleQty / 100.0, now));
+            stockDeltas.add(ItemJournal.stockDeltaEntry(model.getId(row), -saleQty));
+        }
+    }
+
+    // POST /restock: same checks as SupplyWindow.addSupply
+    private String restock(HttpExchange exchange) throws Exception {
+        Map<String, Object> request = jsonObject(exchange);
+        if (request.get("id") == null || request.get("quantity") == null) throw new ApiException(400, "All fields must be filled.");
+        int row = rowOf(String.valueOf(request.get("id")));
+        LocalDate date = LocalDate.now();
+        if (request.get("date") != null) {
+            try {
+                date = LocalDate.parse(String.valueOf(request.get("date")).trim());
+            } catch (DateTimeParseException e) {
+                throw new ApiException(400, "Date must be in yyyy-MM-dd format.");
+            }
+        }
+        int addedQty = intValue(request.get("quantity"), "Quantity must be a valid positive number.");
+        if (addedQty <= 0) throw new ApiException(400, "Quantity must be a valid positive number.");
+
+        int id = model.getNumericId(row);
+        int stock;
+        try {
+            stock = checkoutEngine.restock(id, addedQty);
+        } catch (ArithmeticException e) {
+            throw new ApiException(400, "Quantity would put the item over the largest stock a single item can hold.");
+        }
+        // Stock first: a failed item log write leaves nothing behind, so taking the delivery back out
+        // undoes it. Once the stock is saved it stands, and a ledger failure is reported with it
+        // rather than as an error the client would retry.
+        try {
+            itemJournal.append(List.of(ItemJournal.stockDeltaEntry(model.getId(row), addedQty)));
+        } catch (IOException | RuntimeException e) {
+            checkoutEngine.restock(id, -addedQty);
+            throw e;
+        }
+        String warning = "";
+        try {
+            supplyLedger.record(id, date, addedQty);
+        } catch (IOException | RuntimeException e) {
+            warning = ", \"warning\": " + Json.quote("The stock was updated, but the delivery could not be added to the supply history: " + e.getMessage());
+        }
+        return "{\"id\": " + Json.quote(model.getId(row)) + ", \"stock\": " + stock + warning + "}";
+    }
+
+    // Row of the item with this ID ("2" or "002"); 404 if there is none
+    private int rowOf(String id) throws ApiException {
+        Integer row = null;
+        try {
+            row = rowById.get(Integer.parseInt(id.trim()));
+        } catch (NumberFormatException e) {
+            // not an ID
+        }
+        if (row == null) throw new ApiException(404, "No item with ID " + id);
+        return row;
+    }
+
+    private String itemJson(int row) {
+        return "{\"id\": " + Json.quote(model.getId(row)) + ", \"type\": " + Json.quote(model.getType(row))
+                + ", \"name\": " + Json.quote(model.getName(row)) + ", \"price\": " + InventoryTableModel.formatPrice(model.getPriceCents(row))
+                + ", \"stock\": " + checkoutEngine.getStock(model.getNumericId(row)) + "}";
+    }
+
+    private static int intValue(Object value, String message) throws ApiException {
+        try {
+            if (value instanceof BigDecimal) return ((BigDecimal) value).intValueExact();
+            if (value instanceof String) return Integer.parseInt(((String) value).trim());
+        } catch (ArithmeticException | NumberFormatException e) {
+            // fall through
+        }
+        throw new ApiException(400, message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> jsonObject(HttpExchange exchange) throws IOException, ApiException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(body);
+        }
+        Object parsed = Json.parse(body.toString(StandardCharsets.UTF_8.name()));
+        if (!(parsed instanceof Map)) throw new ApiException(400, "Expected a JSON object");
+        return (Map<String, Object>) parsed;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + Json.quote(message) + "}";
+    }
+
+    // Finish queued writes and save state; called from the shutdown hook
+    private void close() {
+        try {
+            if (groupCommitter != null) groupCommitter.close();
+            saleIds.close();
+            salesJournal.close();
+            supplyLedger.close();
+            itemJournal.checkpoint();
+            itemJournal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing data files: " + e.getMessage());
+        }
+    }
+}
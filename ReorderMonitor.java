@@ -0,0 +1,192 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Items whose stock is at or below their reorder point, most urgent first.
+//
+// reorder_points.txt holds "id,point,orderUpTo" for items with their own reorder
+// point; every other item uses -Dreorder.defaultPoint (default 0, so sold-out items
+// always show). A suggested order brings the item back up to orderUpTo, which
+// defaults to twice the point (at least point + 1).
+//
+// The monitor is a StockListener on the CheckoutEngine, so each sale, delivery,
+// add, edit, import or delete moves at most one entry in a TreeSet ordered by
+// urgency (stock as a fraction of the reorder point): O(log n) per change, and
+// the catalog is scanned only once, by rebuild() at load.
+// Stock changes arrive on whichever thread made them, so methods are synchronized.
+public class ReorderMonitor implements CheckoutEngine.StockListener {
+
+    // One item that needs reordering
+    public static final class Entry {
+        public final int itemId;
+        public final int stock;
+        public final int reorderPoint;
+        public final int orderUpTo;
+
+        Entry(int itemId, int stock, int reorderPoint, int orderUpTo) {
+            this.itemId = itemId;
+            this.stock = stock;
+            this.reorderPoint = reorderPoint;
+            this.orderUpTo = orderUpTo;
+        }
+
+        public int getSuggestedOrder() {
+            return Math.max(0, orderUpTo - stock);
+        }
+    }
+
+    // Lowest share of the reorder point left comes first: a sold-out item before one
+    // at half its point, and one at 2 of 50 before one at 2 of 5
+    private static final Comparator<Entry> URGENCY = (a, b) -> {
+        int byShare = Long.compare((long) a.stock * (b.reorderPoint + 1), (long) b.stock * (a.reorderPoint + 1));
+        return byShare != 0 ? byShare : Integer.compare(a.itemId, b.itemId);
+    };
+
+    private final CheckoutEngine checkoutEngine;
+    private final int defaultPoint = Integer.getInteger("reorder.defaultPoint", 0);
+    private final Map<Integer, int[]> points = new HashMap<>(); // item ID -> {point, orderUpTo}, own settings only
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> queue = new TreeSet<>(URGENCY);
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    public ReorderMonitor(CheckoutEngine checkoutEngine) {
+        this.checkoutEngine = checkoutEngine;
+        checkoutEngine.addStockListener(this);
+        Metrics.get().gauge("pos_reorder_items", "Items at or below their reorder point", this::size);
+    }
+
+    // Called after the queue changes, on the thread that changed it
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    // Read reorder_points.txt (a missing file means no own points). File I/O: call on the persistence executor.
+    public synchronized void loadPoints(Path file) throws IOException {
+        points.clear();
+        if (!Files.exists(file)) return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                try {
+                    int point = Integer.parseInt(parts[1].trim());
+                    int orderUpTo = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : defaultOrderUpTo(point);
+                    points.put(Integer.parseInt(parts[0].trim()), new int[]{point, orderUpTo});
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Skipping malformed reorder point: " + line);
+                }
+            }
+        }
+    }
+
+    // Write the items' own points as a new file, moved into place. File I/O: call on the persistence executor.
+    public void savePoints(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, int[]> point : points.entrySet()) {
+                lines.add(InventoryTableModel.formatId(point.getKey()) + "," + point.getValue()[0] + "," + point.getValue()[1]);
+            }
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Check every item once, after the checkout engine has loaded its stock
+    public void rebuild(InventoryTableModel model) {
+        synchronized (this) {
+            entries.clear();
+            queue.clear();
+            for (int row = 0; row < model.getRowCount(); row++) {
+                int id = model.getNumericId(row);
+                place(id, checkoutEngine.getStock(id));
+            }
+        }
+        fireChanged();
+    }
+
+    @Override
+    public void stockChanged(int itemId, int quantity) {
+        boolean changed;
+        synchronized (this) {
+            changed = place(itemId, quantity);
+        }
+        if (changed) fireChanged();
+    }
+
+    // Give an item its own reorder point and order-up-to level (orderUpTo <= 0 for the default)
+    public void setReorderPoint(int itemId, int point, int orderUpTo) {
+        synchronized (this) {
+            points.put(itemId, new int[]{point, orderUpTo > 0 ? orderUpTo : defaultOrderUpTo(point)});
+            place(itemId, checkoutEngine.getStock(itemId));
+        }
+        fireChanged();
+    }
+
+    // Drop an item's own point, e.g. when it is deleted; true if it had one
+    public synchronized boolean clearReorderPoint(int itemId) {
+        return points.remove(itemId) != null;
+    }
+
+    // {point, orderUpTo} in effect for the item
+    public synchronized int[] getReorderPoint(int itemId) {
+        int[] own = points.get(itemId);
+        return own != null ? own.clone() : new int[]{defaultPoint, defaultOrderUpTo(defaultPoint)};
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    // The 'limit' most urgent items, most urgent first
+    public synchronized List<Entry> mostUrgent(int limit) {
+        List<Entry> urgent = new ArrayList<>(Math.min(limit, queue.size()));
+        for (Entry entry : queue) {
+            if (urgent.size() == limit) break;
+            urgent.add(entry);
+        }
+        return urgent;
+    }
+
+    // Put the item in, move it or take it out of the queue for its new stock (-1: item removed).
+    // Returns true if the queue changed.
+    private boolean place(int itemId, int stock) {
+        Entry old = entries.remove(itemId);
+        if (old != null) queue.remove(old);
+        int[] point = points.get(itemId);
+        int reorderPoint = point != null ? point[0] : defaultPoint;
+        if (stock < 0 || stock > reorderPoint) return old != null;
+        Entry entry = new Entry(itemId, stock, reorderPoint, point != null ? point[1] : defaultOrderUpTo(reorderPoint));
+        entries.put(itemId, entry);
+        queue.add(entry);
+        return true;
+    }
+
+    private static int defaultOrderUpTo(int point) {
+        return Math.max(point * 2, point + 1);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Live "needs reorder" list beside the inventory table, most urgent first.
+// It redraws from ReorderMonitor at most once per EDT turn however many sales
+// land in between, and shows the first MAX_ROWS items. "Export" writes every
+// item that needs reordering, with a suggested quantity, to purchase_suggestions.csv.
+public class ReorderPanel extends JPanel {
+
+    private static final String EXPORT_FILE = "purchase_suggestions.csv";
+    private static final int MAX_ROWS = 500;
+
+    private final ReorderMonitor monitor;
+    private final InventoryTableModel inventoryModel;
+    private final ItemCatalog catalog;
+    private final EntryTableModel tableModel = new EntryTableModel();
+    private final JLabel titleLabel = new JLabel();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    // Rows of the reorder table; names are read from the inventory when painted, so renames show at once
+    private final class EntryTableModel extends AbstractTableModel {
+        private final String[] columns = {"ID", "Name", "Stock", "Point", "Order"};
+        private List<ReorderMonitor.Entry> entries = new ArrayList<>();
+
+        @Override public int getRowCount() { return entries.size(); }
+        @Override public int getColumnCount() { return columns.length; }
+        @Override public String getColumnName(int column) { return columns[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            ReorderMonitor.Entry entry = entries.get(row);
+            switch (column) {
+                case 0: return InventoryTableModel.formatId(entry.itemId);
+                case 1: return nameOf(entry.itemId);
+                case 2: return entry.stock;
+                case 3: return entry.reorderPoint;
+                default: return entry.getSuggestedOrder();
+            }
+        }
+
+        void setEntries(List<ReorderMonitor.Entry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+    }
+
+    public ReorderPanel(ReorderMonitor monitor, InventoryTableModel inventoryModel, ItemCatalog catalog) {
+        super(new BorderLayout(5, 5));
+        this.monitor = monitor;
+        this.inventoryModel = inventoryModel;
+        this.catalog = catalog;
+
+        JTable table = new JTable(tableModel);
+        table.getColumnModel().getColumn(0).setPreferredWidth(50);
+        table.getColumnModel().getColumn(1).setPreferredWidth(160);
+        JButton exportButton = new JButton("Export Suggestions");
+        exportButton.addActionListener(e -> exportSuggestions());
+
+        add(titleLabel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(exportButton, BorderLayout.SOUTH);
+        setPreferredSize(new Dimension(360, 0));
+
+        monitor.addChangeListener(() -> {
+            if (refreshQueued.compareAndSet(false, true)) SwingUtilities.invokeLater(this::refresh);
+        });
+        refresh();
+    }
+
+    private void refresh() {
+        refreshQueued.set(false);
+        int total = monitor.size();
+        tableModel.setEntries(monitor.mostUrgent(MAX_ROWS));
+        titleLabel.setText("Needs reorder: " + total + (total > MAX_ROWS ? " (showing " + MAX_ROWS + ")" : ""));
+    }
+
+    // Lines are built here on the EDT, which owns the inventory model; the file is written in the background
+    private void exportSuggestions() {
+        List<ReorderMonitor.Entry> entries = monitor.mostUrgent(Integer.MAX_VALUE);
+        List<String> lines = new ArrayList<>(entries.size() + 1);
+        lines.add("id,type,name,stock,reorder_point,order_up_to,suggested_quantity");
+        for (ReorderMonitor.Entry entry : entries) {
+            int row = catalog.findRowById(InventoryTableModel.formatId(entry.itemId));
+            if (row == -1) continue;
+            lines.add(inventoryModel.getId(row) + "," + inventoryModel.getType(row) + "," + inventoryModel.getName(row) + ","
+                    + entry.stock + "," + entry.reorderPoint + "," + entry.orderUpTo + "," + entry.getSuggestedOrder());
+        }
+        Path file = Paths.get(EXPORT_FILE);
+        PersistenceExecutor.get().submit(() -> {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file.toAbsolutePath();
+        }, written -> JOptionPane.showMessageDialog(this, (lines.size() - 1) + " purchase suggestions written to " + written,
+                "Export", JOptionPane.INFORMATION_MESSAGE),
+                ex -> JOptionPane.showMessageDialog(this, "Error exporting suggestions: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private String nameOf(int itemId) {
+        int row = catalog.findRowById(InventoryTableModel.formatId(itemId));
+        return row == -1 ? "" : inventoryModel.getName(row);
+    }
+}
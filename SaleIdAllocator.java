@@ -0,0 +1,111 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out sale IDs from any thread without locking.
+// IDs come from an AtomicLong; every BLOCK_SIZE IDs the allocator reserves the
+// next block by writing its upper bound (the high-water mark) to disk with an
+// fsync before any ID from it is used. After a crash, allocation resumes at the
+// high-water mark, so an ID that was handed out but never saved is not reused.
+// A clean close() records the exact next ID instead, so restarts leave no gap.
+// Item IDs come from one too (item_id.hwm), so a deleted item's ID is never
+// given to a new item and its supply history stays its own.
+public class SaleIdAllocator {
+
+    private static final long BLOCK_SIZE = 1000;
+
+    private final Path highWaterFile;
+    private final AtomicLong next;
+    private volatile long limit; // IDs below this are reserved on disk
+    private final Object reserveLock = new Object();
+
+    private SaleIdAllocator(Path highWaterFile, long first) {
+        this.highWaterFile = highWaterFile;
+        this.next = new AtomicLong(first);
+        this.limit = first;
+    }
+
+    // Start after both the last ID in the sales file and the saved high-water mark
+    public static SaleIdAllocator open(Path highWaterFile, long lastUsedId) throws IOException {
+        long first = Math.max(lastUsedId + 1, readHighWater(highWaterFile));
+        SaleIdAllocator allocator = new SaleIdAllocator(highWaterFile, first);
+        allocator.reserveThrough(first);
+        return allocator;
+    }
+
+    public long nextId() {
+        long id = next.getAndIncrement();
+        if (id >= limit) {
+            try {
+                reserveThrough(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not reserve IDs in " + highWaterFile, e);
+            }
+        }
+        return id;
+    }
+
+    // The ID the next nextId() call returns
+    public long peekNextId() {
+        return next.get();
+    }
+
+    // Hand out no ID below 'first' from now on; IDs up to it are reserved on disk before this returns
+    public void skipTo(long first) throws IOException {
+        next.accumulateAndGet(first, Math::max);
+        reserveThrough(first - 1);
+    }
+
+    // Next ID in its stored form: zero-padded to at least three digits, wider as needed
+    public String nextFormattedId() {
+        return format(nextId());
+    }
+
+    public static String format(long id) {
+        String digits = Long.toString(id);
+        if (id < 0 || digits.length() >= 3) return id < 0 ? String.format("%03d", id) : digits;
+        return (digits.length() == 1 ? "00" : "0") + digits;
+    }
+
+    // Make sure 'id' is inside a reserved block; only the thread that crosses a block boundary waits
+    private void reserveThrough(long id) throws IOException {
+        synchronized (reserveLock) {
+            if (id < limit) return;
+            long newLimit = id + BLOCK_SIZE;
+            writeHighWater(highWaterFile, newLimit);
+            limit = newLimit;
+        }
+    }
+
+    // On clean shutdown, record the exact next ID so the unused rest of the block is not skipped
+    public void close() throws IOException {
+        synchronized (reserveLock) {
+            long first = next.get();
+            writeHighWater(highWaterFile, first);
+            limit = first;
+        }
+    }
+
+    private static long readHighWater(Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        try {
+            return text.isEmpty() ? 0 : Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt sale ID high-water file " + file + ": " + text);
+        }
+    }
+
+    // Temp file, fsync, atomic move: the file always holds a whole number
+    private static void writeHighWater(Path file, long value) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            out.write(Long.toString(value).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
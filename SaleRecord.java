@@ -1,9 +1,5 @@
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
 public class SaleRecord {
-    private static int nextId = 1; // Static counter
-    private final String salesId; // Unique sales ID (e.g., 001, 002, ...)
+    private final String salesId; // Unique sales ID (e.g., 001, 002, ..., 1000); see SaleIdAllocator
     private final String type;
     private final String name;
     private final int quantity;
@@ -11,8 +7,9 @@ public class SaleRecord {
     private final double total;
     private final String saleDateTime;
 
-    public SaleRecord(String type, String name, int quantity, double unitPrice, double total, String saleDateTime) {
-        this.salesId = String.format("%03d", nextId++);
+    // New sales take their ID from SalesHistory.nextSaleId(); loaded records keep the stored one
+    public SaleRecord(String salesId, String type, String name, int quantity, double unitPrice, double total, String saleDateTime) {
+        this.salesId = salesId;
         this.type = type;
         this.name = name;
         this.quantity = quantity;
@@ -21,9 +18,9 @@ public class SaleRecord {
         this.saleDateTime = saleDateTime;
     }
 
-    // Add this method to reset counter if needed (e.g., on program load)
-    public static void setNextId(int next) {
-        nextId = next;
+    // For flyweight views (see SalesStore) that override every getter
+    protected SaleRecord() {
+        this(null, null, null, 0, 0, 0, null);
     }
 
     // Getter methods
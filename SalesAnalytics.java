@@ -0,0 +1,420 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Grouped sales figures over any date range, computed in parallel: revenue by
+// type, month and day, top sellers by revenue and by units, and ticket size.
+//
+// The range's rows, in time order from SalesTimeIndex, are cut into month
+// segments, and months longer than SEGMENT_ROWS lines are cut again where the
+// timestamp changes. A fork/join task halves the segment list down to single
+// segments; each leaf totals its rows by dictionary code into primitive arrays,
+// and the halves are merged on the way back up. Names are decoded only for the
+// final groups.
+//
+// The lines of one checkout share a timestamp, so a ticket is a run of lines
+// with the same time (two checkouts in the same second count as one).
+//
+// Usage: java SalesAnalytics [--dir .] [--threads 1,2,4,<cores>] [--top 10] [--iterations 5]
+//   times the report over the whole of sales_records.txt at each parallelism
+public final class SalesAnalytics {
+
+    private static final int SEGMENT_ROWS = 1 << 16;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private static final Metrics.Histogram REPORT_TIME = Metrics.get().histogram("pos_sales_analytics_seconds",
+            "Time to compute one parallel sales analytics report");
+
+    // The finished report; groups are SalesRollup.Totals so they show like the running totals
+    public static final class Report {
+        public final LocalDate from;
+        public final LocalDate to;
+        public final SalesRollup.Totals grand;
+        public final long tickets;
+        public final List<Map.Entry<String, SalesRollup.Totals>> topByRevenue;
+        public final List<Map.Entry<String, SalesRollup.Totals>> topByUnits;
+        public final List<Map.Entry<String, SalesRollup.Totals>> byType;  // by revenue
+        public final List<Map.Entry<String, SalesRollup.Totals>> byMonth; // yyyy-MM, in order
+        public final List<Map.Entry<String, SalesRollup.Totals>> byDay;   // yyyy-MM-dd, in order, days with sales only
+        public final int segments;
+        public final long elapsedNanos;
+
+        Report(LocalDate from, LocalDate to, SalesRollup.Totals grand, long tickets,
+               List<Map.Entry<String, SalesRollup.Totals>> topByRevenue, List<Map.Entry<String, SalesRollup.Totals>> topByUnits,
+               List<Map.Entry<String, SalesRollup.Totals>> byType, List<Map.Entry<String, SalesRollup.Totals>> byMonth,
+               List<Map.Entry<String, SalesRollup.Totals>> byDay, int segments, long elapsedNanos) {
+            this.from = from;
+            this.to = to;
+            this.grand = grand;
+            this.tickets = tickets;
+            this.topByRevenue = topByRevenue;
+            this.topByUnits = topByUnits;
+            this.byType = byType;
+            this.byMonth = byMonth;
+            this.byDay = byDay;
+            this.segments = segments;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getAverageTicket() {
+            return tickets == 0 ? 0 : grand.getRevenueCents() / 100.0 / tickets;
+        }
+
+        public double getAverageTicketUnits() {
+            return tickets == 0 ? 0 : (double) grand.getUnits() / tickets;
+        }
+    }
+
+    // Lines, units and revenue for groups numbered 0..size-1 (types, days)
+    private static final class Dense {
+        final long[] lines;
+        final long[] units;
+        final long[] cents;
+
+        Dense(int size) {
+            lines = new long[size];
+            units = new long[size];
+            cents = new long[size];
+        }
+
+        void add(int group, int quantity, long totalCents) {
+            lines[group]++;
+            units[group] += quantity;
+            cents[group] += totalCents;
+        }
+
+        void merge(Dense other) {
+            for (int g = 0; g < lines.length; g++) {
+                lines[g] += other.lines[g];
+                units[g] += other.units[g];
+                cents[g] += other.cents[g];
+            }
+        }
+    }
+
+    // The same per item name code, in an open-addressing table: a segment sells only
+    // some of the items, and one dense array per segment would not fit a large catalog
+    private static final class Sparse {
+        int size;
+        int[] keys; // code + 1; 0 marks an empty slot
+        long[] lines;
+        long[] units;
+        long[] cents;
+
+        Sparse(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new int[capacity];
+            lines = new long[capacity];
+            units = new long[capacity];
+            cents = new long[capacity];
+        }
+
+        void add(int code, long lineCount, long quantity, long totalCents) {
+            int mask = keys.length - 1;
+            int slot = mix(code) & mask;
+            while (keys[slot] != 0 && keys[slot] != code + 1) slot = (slot + 1) & mask;
+            if (keys[slot] == 0) {
+                keys[slot] = code + 1;
+                if (++size * 2 > keys.length) {
+                    grow();
+                    add(code, lineCount, quantity, totalCents);
+                    return;
+                }
+            }
+            lines[slot] += lineCount;
+            units[slot] += quantity;
+            cents[slot] += totalCents;
+        }
+
+        // Fold the smaller table into the larger; returns the larger
+        Sparse merge(Sparse other) {
+            if (other.size > size) return other.merge(this);
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.keys[slot] != 0) add(other.keys[slot] - 1, other.lines[slot], other.units[slot], other.cents[slot]);
+            }
+            return this;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldLines = lines, oldUnits = units, oldCents = cents;
+            keys = new int[oldKeys.length * 2];
+            lines = new long[keys.length];
+            units = new long[keys.length];
+            cents = new long[keys.length];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != 0) add(oldKeys[slot] - 1, oldLines[slot], oldUnits[slot], oldCents[slot]);
+            }
+        }
+
+        private static int mix(int code) {
+            int h = code * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // One leaf's or one merged half's totals
+    private static final class Partial {
+        final Dense byType;
+        final Dense byDay;
+        Sparse byItem;
+        long tickets;
+
+        Partial(int types, int days, int expectedItems) {
+            byType = new Dense(types);
+            byDay = new Dense(days);
+            byItem = new Sparse(expectedItems);
+        }
+
+        Partial merge(Partial other) {
+            byType.merge(other.byType);
+            byDay.merge(other.byDay);
+            byItem = byItem.merge(other.byItem);
+            tickets += other.tickets;
+            return this;
+        }
+    }
+
+    private final SalesStore.Snapshot store;
+    private final int[] rows;
+    private final int[] segmentStarts; // segment i is rows[segmentStarts[i] .. segmentStarts[i + 1])
+    private final long firstDay;
+    private final int days;
+    private final int types;
+
+    private SalesAnalytics(SalesStore.Snapshot store, int[] rows, LocalDate from, LocalDate to) {
+        this.store = store;
+        this.rows = rows;
+        this.firstDay = from.toEpochDay();
+        this.days = (int) (to.toEpochDay() - firstDay + 1);
+        this.types = store.typeCount();
+        this.segmentStarts = segments(from, to);
+    }
+
+    // Report on 'rows' (time-ordered sales on the days from..to, e.g. from
+    // SalesTimeIndex.betweenDays) with the top 'topN' items, computed on 'pool'.
+    // Only reads the snapshot, so it can run off the EDT.
+    public static Report compute(SalesStore.Snapshot store, int[] rows, LocalDate from, LocalDate to, int topN, ForkJoinPool pool) {
+        long started = System.nanoTime();
+        SalesAnalytics analytics = new SalesAnalytics(store, rows, from, to);
+        Partial total = analytics.segmentStarts.length == 1
+                ? new Partial(analytics.types, analytics.days, 0)
+                : pool.invoke(analytics.new Segments(0, analytics.segmentStarts.length - 1));
+        Report report = analytics.report(total, topN, from, to, System.nanoTime() - started);
+        REPORT_TIME.recordSince(started);
+        return report;
+    }
+
+    // Halves the segment list until one segment is left, then merges the halves' totals
+    private final class Segments extends RecursiveTask<Partial> {
+        private final int first;
+        private final int end;
+
+        Segments(int first, int end) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (end - first == 1) return total(segmentStarts[first], segmentStarts[first + 1]);
+            int middle = (first + end) >>> 1;
+            Segments left = new Segments(first, middle);
+            left.fork();
+            Partial right = new Segments(middle, end).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Totals of rows[start..end); the leaf work
+    private Partial total(int start, int end) {
+        // Popular items repeat, so a segment usually sells far fewer items than it has lines
+        Partial partial = new Partial(types, days, Math.min((end - start) / 4, store.nameCount()));
+        long previousTime = Long.MIN_VALUE;
+        for (int i = start; i < end; i++) {
+            int row = rows[i];
+            long time = store.getEpochSecond(row);
+            int quantity = store.getQuantity(row);
+            long cents = store.getTotalCents(row);
+            if (time != previousTime) partial.tickets++;
+            previousTime = time;
+            partial.byType.add(store.getTypeCode(row), quantity, cents);
+            partial.byDay.add((int) (Math.floorDiv(time, SECONDS_PER_DAY) - firstDay), quantity, cents);
+            partial.byItem.add(store.getNameCode(row), 1, quantity, cents);
+        }
+        return partial;
+    }
+
+    // Cut positions in 'rows': every month start, then every SEGMENT_ROWS within a month,
+    // moved forward to the next change of timestamp so no ticket is split
+    private int[] segments(LocalDate from, LocalDate to) {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        YearMonth month = YearMonth.from(from);
+        while (starts.get(starts.size() - 1) < rows.length) {
+            month = month.plusMonths(1);
+            int monthStart = month.atDay(1).isAfter(to) ? rows.length : firstAtOrAfter(month.atDay(1).toEpochDay() * SECONDS_PER_DAY);
+            int at = starts.get(starts.size() - 1);
+            while (monthStart - at > SEGMENT_ROWS) {
+                at += SEGMENT_ROWS;
+                long time = store.getEpochSecond(rows[at - 1]);
+                while (at < monthStart && store.getEpochSecond(rows[at]) == time) at++;
+                if (at < monthStart) starts.add(at);
+            }
+            if (monthStart > starts.get(starts.size() - 1)) starts.add(monthStart);
+        }
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; i++) result[i] = starts.get(i);
+        return result;
+    }
+
+    // First position in 'rows' whose time is >= 'time'
+    private int firstAtOrAfter(long time) {
+        int lo = 0, hi = rows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (store.getEpochSecond(rows[mid]) < time) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private Report report(Partial total, int topN, LocalDate from, LocalDate to, long elapsedNanos) {
+        List<Map.Entry<String, SalesRollup.Totals>> byType = new ArrayList<>();
+        for (int code = 0; code < types; code++) {
+            if (total.byType.lines[code] > 0) byType.add(entry(store.decodeType(code), total.byType, code));
+        }
+        byType.sort((a, b) -> Long.compare(b.getValue().getRevenueCents(), a.getValue().getRevenueCents()));
+
+        List<Map.Entry<String, SalesRollup.Totals>> byDay = new ArrayList<>();
+        List<Map.Entry<String, SalesRollup.Totals>> byMonth = new ArrayList<>();
+        YearMonth month = null;
+        long monthLines = 0, monthUnits = 0, monthCents = 0;
+        for (int d = 0; d < days; d++) {
+            LocalDate day = LocalDate.ofEpochDay(firstDay + d);
+            if (month != null && !YearMonth.from(day).equals(month) && monthLines > 0) {
+                byMonth.add(Map.entry(month.toString(), SalesRollup.Totals.of(monthCents, monthUnits, monthLines)));
+                monthLines = monthUnits = monthCents = 0;
+            }
+            month = YearMonth.from(day);
+            if (total.byDay.lines[d] == 0) continue;
+            byDay.add(entry(day.toString(), total.byDay, d));
+            monthLines += total.byDay.lines[d];
+            monthUnits += total.byDay.units[d];
+            monthCents += total.byDay.cents[d];
+        }
+        if (monthLines > 0) byMonth.add(Map.entry(month.toString(), SalesRollup.Totals.of(monthCents, monthUnits, monthLines)));
+
+        long lines = 0, units = 0, cents = 0;
+        for (int code = 0; code < types; code++) {
+            lines += total.byType.lines[code];
+            units += total.byType.units[code];
+            cents += total.byType.cents[code];
+        }
+        Sparse items = total.byItem;
+        return new Report(from, to, SalesRollup.Totals.of(cents, units, lines), total.tickets,
+                top(items, items.cents, topN), top(items, items.units, topN), byType, byMonth, byDay,
+                segmentStarts.length - 1, elapsedNanos);
+    }
+
+    // The 'n' items with the largest 'values', largest first
+    private List<Map.Entry<String, SalesRollup.Totals>> top(Sparse items, long[] values, int n) {
+        PriorityQueue<Integer> smallest = new PriorityQueue<>((a, b) -> Long.compare(values[a], values[b]));
+        for (int slot = 0; slot < items.keys.length && n > 0; slot++) {
+            if (items.keys[slot] == 0) continue;
+            if (smallest.size() < n) {
+                smallest.add(slot);
+            } else if (values[slot] > values[smallest.peek()]) {
+                smallest.poll();
+                smallest.add(slot);
+            }
+        }
+        List<Map.Entry<String, SalesRollup.Totals>> top = new ArrayList<>(smallest.size());
+        while (!smallest.isEmpty()) {
+            int slot = smallest.poll();
+            top.add(Map.entry(store.decodeName(items.keys[slot] - 1),
+                    SalesRollup.Totals.of(items.cents[slot], items.units[slot], items.lines[slot])));
+        }
+        Collections.reverse(top);
+        return top;
+    }
+
+    private static Map.Entry<String, SalesRollup.Totals> entry(String key, Dense groups, int index) {
+        return Map.entry(key, SalesRollup.Totals.of(groups.cents[index], groups.units[index], groups.lines[index]));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(".");
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threads = cores > 2 ? new int[]{1, 2, cores} : new int[]{1, 2};
+        int topN = 10;
+        int iterations = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dir": dir = Paths.get(args[i + 1]); break;
+                case "--threads": threads = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                case "--top": topN = Integer.parseInt(args[i + 1]); break;
+                case "--iterations": iterations = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        long started = System.nanoTime();
+        SalesStore store = SalesJournal.readAll(dir.resolve("sales_records.txt"));
+        SalesTimeIndex index = new SalesTimeIndex(store);
+        long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+        for (int row = 0; row < store.size(); row++) {
+            long time = store.getEpochSecond(row);
+            if (time == Long.MIN_VALUE) continue;
+            first = Math.min(first, time);
+            last = Math.max(last, time);
+        }
+        if (first > last) throw new IllegalStateException("No dated sales in " + dir.resolve("sales_records.txt"));
+        LocalDate from = LocalDate.ofEpochDay(Math.floorDiv(first, SECONDS_PER_DAY));
+        LocalDate to = LocalDate.ofEpochDay(Math.floorDiv(last, SECONDS_PER_DAY));
+        int[] rows = index.betweenDays(from, to);
+        SalesStore.Snapshot snapshot = store.snapshot();
+        System.out.printf("Loaded %d sale lines (%s to %s) in %.1f s; %d cores%n",
+                store.size(), from, to, (System.nanoTime() - started) / 1e9, cores);
+
+        Report report = null;
+        double baseline = 0;
+        System.out.printf("%8s %12s %12s %9s%n", "threads", "best ms", "mean ms", "speedup");
+        for (int parallelism : threads) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                compute(snapshot, rows, from, to, topN, pool); // warm-up
+                long best = Long.MAX_VALUE, sum = 0;
+                for (int i = 0; i < iterations; i++) {
+                    report = compute(snapshot, rows, from, to, topN, pool);
+                    best = Math.min(best, report.elapsedNanos);
+                    sum += report.elapsedNanos;
+                }
+                if (baseline == 0) baseline = best;
+                System.out.printf("%8d %12.1f %12.1f %8.2fx%n", parallelism, best / 1e6, sum / 1e6 / iterations, baseline / best);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        System.out.printf("%n%d lines in %d segments, %d tickets, average ticket $%.2f (%.2f units)%n",
+                report.grand.getLines(), report.segments, report.tickets, report.getAverageTicket(), report.getAverageTicketUnits());
+        System.out.println("Top " + topN + " by revenue:");
+        for (Map.Entry<String, SalesRollup.Totals> item : report.topByRevenue) {
+            System.out.printf("  %-40s %10d units %16.2f%n", item.getKey(), item.getValue().getUnits(), item.getValue().getRevenue());
+        }
+        System.out.println("Revenue by type:");
+        for (Map.Entry<String, SalesRollup.Totals> type : report.byType) {
+            System.out.printf("  %-40s %10d units %16.2f%n", type.getKey(), type.getValue().getUnits(), type.getValue().getRevenue());
+        }
+    }
+}
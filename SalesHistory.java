@@ -0,0 +1,218 @@
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// The sales history, shared by every SalesWindow for the life of the process.
+// Opening it only reads the last sale ID from the end of the file; the records
+// themselves are streamed in the first time a report asks for them.
+// All methods are called on the EDT; file work runs on the persistence executor.
+public final class SalesHistory {
+
+    private static final String SALES_FILE_NAME = "sales_records.txt";
+    private static final String SALE_ID_FILE_NAME = "sale_id.hwm";
+    private static SalesHistory instance;
+
+    private final Path path;
+    private SalesJournal journal;
+    private ItemJournal itemJournal;
+    private volatile GroupCommitter groupCommitter; // only with -Dsales.fsync=group
+    private volatile SaleIdAllocator saleIds;
+    private boolean opening;
+    private boolean recoveryWarningShown;
+    private final List<Runnable> openWaiters = new ArrayList<>();
+
+    // Filled once by load(); until then, sales made in this process wait in 'recent'
+    private SalesStore records = new SalesStore(); // columnar; see SalesStore
+    private final List<SaleRecord> recent = new ArrayList<>();
+    private SalesRollup rollup = new SalesRollup();
+    private SalesTimeIndex timeIndex;
+    private final SalesVelocity velocity = new SalesVelocity(); // 7/30/90-day units per item, kept from open to close
+    private boolean loaded;
+    private boolean loading;
+    private final List<Runnable> loadWaiters = new ArrayList<>();
+
+    private SalesHistory(Path path) {
+        this.path = path;
+        Metrics.get().gauge("pos_sales_records_loaded", "Sale lines held in memory", () -> records.size() + recent.size());
+        Metrics.get().fileSizeGauge(path);
+    }
+
+    public static synchronized SalesHistory get() {
+        if (instance == null) instance = new SalesHistory(Paths.get(SALES_FILE_NAME));
+        return instance;
+    }
+
+    // Open the journal and the sale ID allocator, which starts after the last ID in the file. Cheap; runs once.
+    // Stock deltas of committed sales go to 'itemJournal' (may be null).
+    public void open(ItemJournal itemJournal, Runnable onReady, Consumer<Exception> onError) {
+        if (journal != null) {
+            onReady.run();
+            return;
+        }
+        openWaiters.add(onReady);
+        if (opening) return;
+        opening = true;
+        PersistenceExecutor.get().submit(() -> {
+            SalesJournal opened = new SalesJournal(path.toString());
+            long lastId = SalesJournal.readLastSalesId(path);
+            saleIds = SaleIdAllocator.open(path.resolveSibling(SALE_ID_FILE_NAME), lastId);
+            if (opened.getSyncPolicy() == SalesJournal.SyncPolicy.GROUP) {
+                groupCommitter = new GroupCommitter(opened, itemJournal, GroupCommitter.windowMillisFromProperty());
+            }
+            return opened;
+        }, opened -> {
+            journal = opened;
+            this.itemJournal = itemJournal;
+            opening = false;
+            runAll(openWaiters);
+        }, e -> {
+            opening = false;
+            openWaiters.clear();
+            onError.accept(e);
+        });
+    }
+
+    // The journal's recovery warning the first time it is asked for, then null, so only one window shows it
+    public String takeRecoveryWarning() {
+        if (journal == null || recoveryWarningShown) return null;
+        recoveryWarningShown = true;
+        return journal.getRecoveryWarning();
+    }
+
+    // ID for a new sale line; safe from any thread once open() has finished
+    public String nextSaleId() {
+        return saleIds.nextFormattedId();
+    }
+
+    // Write queued sales and save the exact next sale ID on a clean exit; may be called from a shutdown hook
+    public void shutdown() {
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) committer.close();
+        SaleIdAllocator ids = saleIds;
+        if (ids == null) return;
+        try {
+            ids.close();
+        } catch (IOException e) {
+            System.err.println("Could not save the next sale ID: " + e.getMessage());
+        }
+    }
+
+    // Record a committed sale in memory and queue it, with its stock delta entries, for writing.
+    // onSaved runs on the EDT once the sale is written (with group commit: once its batch is on disk).
+    public void commit(List<SaleRecord> sale, List<String> stockDeltas, Runnable onSaved, Consumer<Exception> onError) {
+        velocity.recordAll(sale);
+        if (loaded) {
+            records.addAll(sale);
+            rollup.addAll(sale);
+            timeIndex.sync();
+        } else {
+            recent.addAll(sale);
+        }
+        if (groupCommitter != null) {
+            groupCommitter.submit(sale, stockDeltas).whenComplete((done, e) -> SwingUtilities.invokeLater(() -> {
+                if (e == null) onSaved.run();
+                else onError.accept(e instanceof Exception ? (Exception) e : new IOException(e));
+            }));
+            return;
+        }
+        // The sale and its deltas are written by one task, so the item log's sales mark (see ItemJournal)
+        // never covers a sale whose deltas are still queued
+        SalesJournal salesJournal = journal;
+        ItemJournal items = itemJournal;
+        PersistenceExecutor.get().submit(() -> {
+            salesJournal.append(sale);
+            if (items != null && !sale.isEmpty()) {
+                try {
+                    items.append(stockDeltas, salesJournal, sale.get(sale.size() - 1));
+                } catch (IOException | RuntimeException e) {
+                    // The sale is saved; the item journal writes the deltas with its next entries
+                    System.err.println("Sale saved but its stock changes were not; they will be written later: " + e);
+                }
+            }
+            return null;
+        }, done -> onSaved.run(), onError);
+    }
+
+    public SalesVelocity getVelocity() {
+        return velocity;
+    }
+
+    // Fill the velocity counters from the last 90 days of the file. File I/O: call on the persistence executor.
+    // Unlike load(), this reads only the tail, so the inventory can show sales rates at startup.
+    public void bootstrapVelocity() throws IOException {
+        velocity.bootstrap(path);
+    }
+
+    // Stream the full history in (once), then run onLoaded
+    public void load(Runnable onLoaded, Consumer<Exception> onError) {
+        if (loaded) {
+            onLoaded.run();
+            return;
+        }
+        loadWaiters.add(onLoaded);
+        if (loading) return;
+        loading = true;
+        PersistenceExecutor.get().submit(() -> SalesJournal.readAll(path), fromFile -> {
+            // Sales made before the load finished may or may not already be in the file
+            Set<Long> inFile = new HashSet<>();
+            if (!recent.isEmpty()) {
+                for (int i = 0; i < fromFile.size(); i++) inFile.add(fromFile.getNumericId(i));
+            }
+            records = fromFile;
+            for (SaleRecord record : recent) {
+                if (!inFile.contains(Long.parseLong(record.getSalesId()))) records.add(record);
+            }
+            recent.clear();
+            rollup = SalesRollup.of(records);
+            timeIndex = new SalesTimeIndex(records);
+            loaded = true;
+            loading = false;
+            runAll(loadWaiters);
+        }, e -> {
+            loading = false;
+            loadWaiters.clear();
+            onError.accept(e);
+        });
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Loaded records in file order (read-only view)
+    public List<SaleRecord> getRecords() {
+        return Collections.unmodifiableList(records);
+    }
+
+    // The loaded records themselves, for read-only views on the EDT such as SalesReportTableModel
+    public SalesStore getStore() {
+        return records;
+    }
+
+    // Columns of the loaded records as they are now, for reading on another thread (see SalesAnalytics)
+    public SalesStore.Snapshot snapshot() {
+        return records.snapshot();
+    }
+
+    public SalesRollup getRollup() {
+        return rollup;
+    }
+
+    // Date-range lookups over the loaded records; null until load() has finished
+    public SalesTimeIndex getTimeIndex() {
+        return timeIndex;
+    }
+
+    private static void runAll(List<Runnable> waiters) {
+        List<Runnable> toRun = new ArrayList<>(waiters);
+        waiters.clear();
+        for (Runnable r : toRun) r.run();
+    }
+}
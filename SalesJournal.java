@@ -0,0 +1,355 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Append-only journal for sales_records.txt.
+// Each sale appends only its own lines, so writing a sale costs the same
+// no matter how long the sales history is.
+public class SalesJournal implements Closeable {
+
+    // When appended sales are forced to disk
+    public enum SyncPolicy {
+        NONE,      // leave flushing to the OS (fastest, may lose the last sales on power loss)
+        ON_APPEND, // fsync after every append (default)
+        GROUP      // sales are batched by a GroupCommitter; fsync once per batch
+    }
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    // Unsnapshotted lines read at load after which sales.bin is rewritten
+    private static final int SNAPSHOT_REFRESH_LINES = 1000;
+    // Block size for reading the file backwards in readSince
+    private static final int TAIL_BLOCK_SIZE = 64 * 1024;
+
+    private static final Metrics.Histogram APPEND_TIME = Metrics.get().histogram("pos_sales_journal_append_seconds",
+            "Time to write (and fsync) one batch of sales");
+    private static final Metrics.Counter APPENDED_BYTES = Metrics.get().counter("pos_sales_journal_bytes_total",
+            "Bytes appended to the sales journal");
+    private static final Metrics.Histogram LOAD_TIME = Metrics.get().histogram("pos_sales_load_seconds",
+            "Time to read the whole sales history");
+
+    private final Path path;
+    private final SyncPolicy syncPolicy;
+    private final FileChannel channel;
+    private final long recoveredBytes; // torn last line dropped at open
+
+    public SalesJournal(String fileName) throws IOException {
+        this(fileName, syncPolicyFromProperty());
+    }
+
+    public SalesJournal(String fileName, SyncPolicy syncPolicy) throws IOException {
+        this.path = Paths.get(fileName);
+        this.syncPolicy = syncPolicy;
+        this.recoveredBytes = recover(path, SalesJournal::isWellFormed);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // -Dsales.fsync=none turns off per-append fsync; -Dsales.fsync=group turns on group commit
+    public static SyncPolicy syncPolicyFromProperty() {
+        String value = System.getProperty("sales.fsync", "append");
+        if (value.equalsIgnoreCase("none")) return SyncPolicy.NONE;
+        return value.equalsIgnoreCase("group") ? SyncPolicy.GROUP : SyncPolicy.ON_APPEND;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Current length of the file in bytes: the end of the last sale appended
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    // Warning to show if opening cut off a torn last line, else null
+    public String getRecoveryWarning() {
+        return recoveryWarning(path, recoveredBytes);
+    }
+
+    // Append the given sales as one write
+    public synchronized void append(List<SaleRecord> records) throws IOException {
+        if (records.isEmpty()) return;
+        long started = System.nanoTime();
+        StringBuilder lines = new StringBuilder();
+        for (SaleRecord record : records) {
+            lines.append(toLine(record)).append(LINE_SEPARATOR);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (syncPolicy != SyncPolicy.NONE) {
+            channel.force(false);
+        }
+        APPEND_TIME.recordSince(started);
+        APPENDED_BYTES.add(bytes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // Text form of one sale, same layout the loader reads
+    static String toLine(SaleRecord record) {
+        return String.join(",",
+                record.getSalesId(),
+                record.getType(),
+                record.getName(),
+                String.valueOf(record.getQuantity()),
+                String.valueOf(record.getUnitPrice()),
+                String.valueOf(record.getTotal()),
+                record.getSaleDateTime());
+    }
+
+    // Parse every well-formed line of a sales file, keeping the stored IDs
+    // Records covered by sales.bin are read from it; only the text after it is parsed.
+    // When that text tail has grown past SNAPSHOT_REFRESH_LINES, sales.bin is rewritten to cover it.
+    public static SalesStore readAll(Path path) throws IOException {
+        long started = System.nanoTime();
+        SalesStore records = new SalesStore();
+        if (!Files.exists(path)) return records;
+        Path binaryPath = BinarySnapshot.snapshotPathFor(path);
+        BinarySnapshot.SalesSnapshot snapshot = BinarySnapshot.readSales(binaryPath, path);
+        long covered = 0;
+        if (snapshot != null) {
+            records = snapshot.records;
+            covered = snapshot.coveredBytes;
+        }
+
+        int tailLines = 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = ch.size();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(ch.position(covered)), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                tailLines++;
+                SaleRecord record = parseLine(line);
+                if (record != null) {
+                    records.add(record);
+                } else {
+                    System.err.println("Skipping malformed line in sales records file: " + line);
+                }
+            }
+
+            if (tailLines >= SNAPSHOT_REFRESH_LINES) {
+                try {
+                    BinarySnapshot.writeSales(binaryPath, records, path, end);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not write sales snapshot " + binaryPath + ": " + e);
+                }
+            }
+        }
+        LOAD_TIME.recordSince(started);
+        return records;
+    }
+
+    // One sale from its text form, or null if the line is malformed
+    static SaleRecord parseLine(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 7) return null;
+        try {
+            Long.parseLong(parts[0]);
+            int quantity = Integer.parseInt(parts[3]);
+            double unitPrice = Double.parseDouble(parts[4]);
+            double total = Double.parseDouble(parts[5]);
+            return new SaleRecord(parts[0], parts[1], parts[2], quantity, unitPrice, total, parts[6]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ID of the last sale in the file, read from the tail only; 0 if there is none.
+    // Sales are appended in ID order, so this is the high-water mark.
+    public static long readLastSalesId(Path path) throws IOException {
+        if (!Files.exists(path)) return 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = ch.size();
+            StringBuilder tail = new StringBuilder();
+            ByteBuffer block = ByteBuffer.allocate(4096);
+            while (end > 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                ch.read(block, start);
+                tail.insert(0, new String(block.array(), 0, block.position(), StandardCharsets.UTF_8));
+                end = start;
+
+                // Walk complete lines from the end until one parses
+                String[] lines = tail.toString().split("\r?\n");
+                for (int i = lines.length - 1; i >= (end > 0 ? 1 : 0); i--) {
+                    SaleRecord record = parseLine(lines[i]);
+                    if (record != null) return Long.parseLong(record.getSalesId());
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Hand every sale dated 'from' or later to 'sink', newest first. Returns true if an older sale was
+    // found, i.e. the history reaches back past 'from'.
+    // Sales are appended in time order, so the file is read backwards and reading stops at the
+    // first older line: the cost follows the recent tail, not the length of the history.
+    public static boolean readSince(Path path, LocalDate from, Consumer<SaleRecord> sink) throws IOException {
+        if (!Files.exists(path)) return false;
+        String firstDate = from.toString();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(TAIL_BLOCK_SIZE);
+            byte[] partial = new byte[0]; // start of the line cut by the previous block
+            long end = ch.size();
+            while (end > 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                while (block.hasRemaining()) {
+                    if (ch.read(block, start + block.position()) < 0) break;
+                }
+                byte[] bytes = new byte[block.position() + partial.length];
+                System.arraycopy(block.array(), 0, bytes, 0, block.position());
+                System.arraycopy(partial, 0, bytes, block.position(), partial.length);
+                end = start;
+
+                // '\n' never occurs inside a UTF-8 sequence, so lines can be cut on the raw bytes
+                int lineEnd = bytes.length;
+                for (int i = bytes.length - 1; i >= -1; i--) {
+                    if (i >= 0 && bytes[i] != '\n') continue;
+                    if (i < 0 && end > 0) break; // the first line may go on in the block before
+                    int length = lineEnd - i - 1;
+                    if (length > 0 && bytes[lineEnd - 1] == '\r') length--;
+                    if (length > 0) {
+                        SaleRecord record = parseLine(new String(bytes, i + 1, length, StandardCharsets.UTF_8));
+                        if (record != null) {
+                            if (record.getSaleDateTime().compareTo(firstDate) < 0) return true;
+                            sink.accept(record);
+                        }
+                    }
+                    lineEnd = i;
+                }
+                partial = Arrays.copyOf(bytes, Math.max(lineEnd, 0));
+            }
+        }
+        return false;
+    }
+
+    // A crash in the middle of an append can leave a partial last line. If the text after the last
+    // newline is not a whole record by 'isRecord', cut the file back to the last complete line; if it
+    // is one (e.g. a hand-edited file without a final newline), end it with a newline instead.
+    // Returns the bytes dropped.
+    static long recover(Path path, Predicate<String> isRecord) throws IOException {
+        if (!Files.exists(path)) return 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            if (size == 0) return 0;
+
+            ByteBuffer one = ByteBuffer.allocate(1);
+            ch.read(one, size - 1);
+            if (one.get(0) == '\n') return 0;
+
+            // Scan backwards in blocks for the last newline
+            ByteBuffer block = ByteBuffer.allocate(4096);
+            long end = size;
+            long keep = 0;
+            while (end > 0 && keep == 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                ch.read(block, start);
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n') {
+                        keep = start + i + 1;
+                        break;
+                    }
+                }
+                end = start;
+            }
+
+            ByteBuffer tail = ByteBuffer.allocate((int) (size - keep));
+            while (tail.hasRemaining() && ch.read(tail, keep + tail.position()) > 0) {
+                // keep reading
+            }
+            if (isRecord.test(new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8).trim())) {
+                ByteBuffer newline = ByteBuffer.wrap(LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8));
+                while (newline.hasRemaining()) {
+                    ch.write(newline, size + newline.position());
+                }
+                ch.force(true);
+                return 0;
+            }
+            ch.truncate(keep);
+            ch.force(true);
+            return size - keep;
+        }
+    }
+
+    // Force the directory holding 'file', so a rename or delete in it survives a crash.
+    // Some platforms (Windows) cannot open a directory; there the rename is left to the OS.
+    static void syncDirectory(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        FileChannel ch;
+        try {
+            ch = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel open = ch) {
+            open.force(true);
+        }
+    }
+
+    // What recover() did, for the window or log that opened the file; null if it dropped nothing
+    static String recoveryWarning(Path path, long droppedBytes) {
+        if (droppedBytes == 0) return null;
+        return "The last line of " + path.getFileName() + " was incomplete, probably cut off by a crash while saving. "
+                + droppedBytes + " bytes were removed.";
+    }
+
+    // Offline compaction: rewrite the journal keeping only well-formed lines.
+    // Written to a temp file first and moved into place, so a crash leaves the old file intact.
+    public static int compact(Path path) throws IOException {
+        recover(path, SalesJournal::isWellFormed);
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        int kept = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isWellFormed(line)) {
+                    writer.write(line);
+                    writer.newLine();
+                    kept++;
+                } else {
+                    System.err.println("Dropping malformed line in sales records file: " + line);
+                }
+            }
+        }
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return kept;
+    }
+
+    private static boolean isWellFormed(String line) {
+        return parseLine(line) != null;
+    }
+
+    // Usage: java SalesJournal compact [file]
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !args[0].equals("compact")) {
+            System.out.println("Usage: java SalesJournal compact [file]");
+            return;
+        }
+        String fileName = args.length > 1 ? args[1] : "sales_records.txt";
+        int kept = compact(Paths.get(fileName));
+        System.out.println("Compacted " + fileName + ": " + kept + " records kept.");
+    }
+}
@@ -0,0 +1,196 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeMap;
+
+// Lazy table over the sales history for the report viewer.
+// Cells are read from the records only when JTable paints them, so the
+// viewer holds no per-row text. Sorting and filtering keep a primitive
+// int[] of record indexes instead of copying rows.
+public class SalesReportTableModel extends AbstractTableModel {
+
+    // Column positions
+    public static final int SALES_ID = 0;
+    public static final int DATE_TIME = 1;
+    public static final int TYPE = 2;
+    public static final int NAME = 3;
+    public static final int QUANTITY = 4;
+    public static final int UNIT_PRICE = 5;
+    public static final int TOTAL = 6;
+
+    private static final String[] COLUMN_NAMES = {"Sales ID", "Date/Time", "Type", "Name", "Quantity", "Unit Price", "Total"};
+
+    private final SalesStore records;
+    private final int[] base; // record indexes the model covers; null for every record
+
+    // Record index for each visible row; null means every record in file order
+    private int[] view;
+    private String filter = "";
+    private int sortColumn = SALES_ID;
+    private boolean ascending = true;
+
+    public SalesReportTableModel(SalesStore records) {
+        this(records, null);
+    }
+
+    // Only the given records, e.g. a date range from SalesTimeIndex
+    public SalesReportTableModel(SalesStore records, int[] rows) {
+        this.records = records;
+        this.base = rows;
+        if (!records.isInIdOrder()) rebuildView(); // the default sales ID order needs an index array
+    }
+
+    @Override
+    public int getRowCount() {
+        return view == null ? getRecordCount() : view.length;
+    }
+
+    // Records covered before filtering
+    public int getRecordCount() {
+        return base == null ? records.size() : base.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == QUANTITY ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        SaleRecord record = getRecord(row);
+        switch (column) {
+            case SALES_ID: return record.getSalesId();
+            case DATE_TIME: return record.getSaleDateTime();
+            case TYPE: return record.getType();
+            case NAME: return record.getName();
+            case QUANTITY: return record.getQuantity();
+            case UNIT_PRICE: return String.format("%.2f", record.getUnitPrice());
+            case TOTAL: return String.format("%.2f", record.getTotal());
+            default: throw new IllegalArgumentException("No column " + column);
+        }
+    }
+
+    public SaleRecord getRecord(int row) {
+        if (view != null) return records.get(view[row]);
+        return records.get(base == null ? row : base[row]);
+    }
+
+    // Keep only sales whose type or name contains the text (case-insensitive)
+    public void setFilter(String text) {
+        filter = text.trim().toLowerCase(Locale.ROOT);
+        rebuildView();
+    }
+
+    // Sort by a column; calling again on the same column flips the direction
+    public void toggleSort(int column) {
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        rebuildView();
+    }
+
+    public int getSortColumn() { return sortColumn; }
+    public boolean isAscending() { return ascending; }
+
+    private void rebuildView() {
+        int total = getRecordCount();
+        boolean idOrder = sortColumn == SALES_ID && records.isInIdOrder();
+        if (base == null && filter.isEmpty() && idOrder) {
+            // File order is sales ID order: no index array needed
+            view = ascending ? null : reversed(identity(total));
+            fireTableDataChanged();
+            return;
+        }
+
+        int[] rows = new int[total];
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            int index = base == null ? i : base[i];
+            if (filter.isEmpty() || matches(index)) rows[count++] = index;
+        }
+        rows = Arrays.copyOf(rows, count);
+        if (!idOrder) rows = sort(rows);
+        else if (base != null) Arrays.sort(rows); // record order is sales ID order
+        view = ascending ? rows : reversed(rows);
+        fireTableDataChanged();
+    }
+
+    private boolean matches(int index) {
+        return records.getName(index).toLowerCase(Locale.ROOT).contains(filter)
+                || records.getType(index).toLowerCase(Locale.ROOT).contains(filter);
+    }
+
+    // Sort record indexes by the current column, ascending.
+    // Each row's full 64-bit key (epoch seconds, cents, quantity or text rank) is replaced by its
+    // rank among the distinct keys, which fits in 32 bits. Each row then becomes one long: rank in
+    // the high 32 bits, record index in the low 32, so a primitive sort does the work and equal
+    // keys keep file order.
+    private int[] sort(int[] rows) {
+        long[] keys = new long[rows.length];
+        if (sortColumn == TYPE || sortColumn == NAME) {
+            TreeMap<String, Integer> ranks = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int index : rows) ranks.put(textKey(index), 0);
+            int rank = 0;
+            for (String key : ranks.keySet()) ranks.put(key, rank++);
+            for (int i = 0; i < rows.length; i++) keys[i] = ranks.get(textKey(rows[i]));
+        } else {
+            for (int i = 0; i < rows.length; i++) keys[i] = numericKey(rows[i]);
+        }
+
+        long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[count - 1]) distinct[count++] = distinct[i];
+        }
+        long[] keyed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long rank = Arrays.binarySearch(distinct, 0, count, keys[i]);
+            keyed[i] = (rank << 32) | rows[i];
+        }
+        Arrays.sort(keyed);
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (int) keyed[i];
+        }
+        return rows;
+    }
+
+    private String textKey(int index) {
+        return sortColumn == TYPE ? records.getType(index) : records.getName(index);
+    }
+
+    // Numeric columns straight from the store: the timestamp as stored epoch seconds, money as cents
+    private long numericKey(int index) {
+        switch (sortColumn) {
+            case SALES_ID: return records.getNumericId(index);
+            case DATE_TIME: return records.getEpochSecond(index);
+            case QUANTITY: return records.getQuantity(index);
+            case UNIT_PRICE: return records.getUnitPriceCents(index);
+            default: return records.getTotalCents(index);
+        }
+    }
+
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) rows[i] = i;
+        return rows;
+    }
+
+    private static int[] reversed(int[] rows) {
+        for (int i = 0, j = rows.length - 1; i < j; i++, j--) {
+            int t = rows[i];
+            rows[i] = rows[j];
+            rows[j] = t;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Running sales totals per day, month, type and item.
+// Each SaleRecord is folded in once when it is added, so reports read the
+// totals directly instead of walking the whole sales history.
+public class SalesRollup {
+
+    // Revenue (in cents), units and line count for one group
+    public static final class Totals {
+        private long revenueCents;
+        private long units;
+        private long lines;
+
+        private void add(long cents, int quantity) {
+            revenueCents += cents;
+            units += quantity;
+            lines++;
+        }
+
+        static Totals of(long revenueCents, long units, long lines) {
+            Totals t = new Totals();
+            t.revenueCents = revenueCents;
+            t.units = units;
+            t.lines = lines;
+            return t;
+        }
+
+        private Totals copy() {
+            return of(revenueCents, units, lines);
+        }
+
+        public double getRevenue() { return revenueCents / 100.0; }
+        public long getRevenueCents() { return revenueCents; }
+        public long getUnits() { return units; }
+        public long getLines() { return lines; }
+    }
+
+    private final Totals grand = new Totals();
+    private final Map<String, Totals> byDay = new TreeMap<>();   // yyyy-MM-dd
+    private final Map<String, Totals> byMonth = new TreeMap<>(); // yyyy-MM
+    private final Map<String, Totals> byType = new HashMap<>();
+    private final Map<String, Totals> byItem = new HashMap<>();
+
+    // Rebuild from a full history (once, at load)
+    public static SalesRollup of(List<SaleRecord> records) {
+        SalesRollup rollup = new SalesRollup();
+        for (SaleRecord record : records) {
+            rollup.add(record);
+        }
+        return rollup;
+    }
+
+    public synchronized void add(SaleRecord record) {
+        long cents = Math.round(record.getTotal() * 100);
+        int quantity = record.getQuantity();
+        String dateTime = record.getSaleDateTime();
+        grand.add(cents, quantity);
+        group(byDay, dateTime.length() >= 10 ? dateTime.substring(0, 10) : dateTime).add(cents, quantity);
+        group(byMonth, dateTime.length() >= 7 ? dateTime.substring(0, 7) : dateTime).add(cents, quantity);
+        group(byType, record.getType()).add(cents, quantity);
+        group(byItem, record.getName()).add(cents, quantity);
+    }
+
+    public synchronized void addAll(List<SaleRecord> records) {
+        for (SaleRecord record : records) {
+            add(record);
+        }
+    }
+
+    private static Totals group(Map<String, Totals> groups, String key) {
+        return groups.computeIfAbsent(key, k -> new Totals());
+    }
+
+    public synchronized Totals getGrandTotals() { return grand.copy(); }
+
+    public synchronized Totals getDay(String day) {
+        Totals t = byDay.get(day);
+        return t == null ? new Totals() : t.copy();
+    }
+
+    // Snapshots of each grouping, sorted by key for days and months, by revenue otherwise
+    public synchronized List<Map.Entry<String, Totals>> getByDay() { return snapshot(byDay, false); }
+    public synchronized List<Map.Entry<String, Totals>> getByMonth() { return snapshot(byMonth, false); }
+    public synchronized List<Map.Entry<String, Totals>> getByType() { return snapshot(byType, true); }
+    public synchronized List<Map.Entry<String, Totals>> getByItem() { return snapshot(byItem, true); }
+
+    private static List<Map.Entry<String, Totals>> snapshot(Map<String, Totals> groups, boolean byRevenue) {
+        List<Map.Entry<String, Totals>> entries = new ArrayList<>(groups.size());
+        for (Map.Entry<String, Totals> e : groups.entrySet()) {
+            entries.add(Map.entry(e.getKey(), e.getValue().copy()));
+        }
+        if (byRevenue) {
+            entries.sort((a, b) -> Long.compare(b.getValue().revenueCents, a.getValue().revenueCents));
+        }
+        return entries;
+    }
+}
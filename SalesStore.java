@@ -0,0 +1,241 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columnar in-memory sales history.
+// Instead of one SaleRecord (four Strings and two doubles) per line, each field
+// is a primitive column: IDs as long, type and name as codes into shared
+// dictionaries, the timestamp as epoch seconds and money as long cents.
+// get(i) returns a small flyweight SaleRecord that reads the columns on demand.
+// Values that would not survive the round trip (an ID with unusual padding, an
+// unparseable timestamp) are kept verbatim in a side map so nothing is lost.
+public class SalesStore extends AbstractList<SaleRecord> {
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StringDictionary types = new StringDictionary();
+    private final StringDictionary names = new StringDictionary();
+
+    private int size;
+    private boolean inIdOrder = true; // false once a sale was added after one with a higher ID
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] typeCodes = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] unitPriceCents = new long[INITIAL_CAPACITY];
+    private long[] totalCents = new long[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+
+    // Row -> original text, only for rows whose ID or timestamp does not round-trip
+    private final Map<Integer, String> oddIds = new HashMap<>();
+    private final Map<Integer, String> oddDates = new HashMap<>();
+
+    public SalesStore() {
+    }
+
+    public SalesStore(List<SaleRecord> records) {
+        for (SaleRecord record : records) add(record);
+    }
+
+    // The columns as they are at snapshot(), for reading rows 0..size-1 on another thread.
+    // Later appends write past 'size' or into new arrays, so the snapshot stays valid without locking.
+    public static final class Snapshot {
+        public final int size;
+        private final StringDictionary types;
+        private final StringDictionary names;
+        private final int[] typeCodes;
+        private final int[] nameCodes;
+        private final int[] quantities;
+        private final long[] totalCents;
+        private final long[] epochSeconds;
+
+        private Snapshot(SalesStore store) {
+            size = store.size;
+            types = store.types;
+            names = store.names;
+            typeCodes = store.typeCodes;
+            nameCodes = store.nameCodes;
+            quantities = store.quantities;
+            totalCents = store.totalCents;
+            epochSeconds = store.epochSeconds;
+        }
+
+        public int getTypeCode(int row) { return typeCodes[row]; }
+        public int getNameCode(int row) { return nameCodes[row]; }
+        public int getQuantity(int row) { return quantities[row]; }
+        public long getTotalCents(int row) { return totalCents[row]; }
+        public long getEpochSecond(int row) { return epochSeconds[row]; }
+        public String decodeType(int code) { return types.decode(code); }
+        public String decodeName(int code) { return names.decode(code); }
+        // Codes are below these counts
+        public int typeCount() { return types.size(); }
+        public int nameCount() { return names.size(); }
+    }
+
+    // Flyweight view of one row; holds only the store and the index
+    private final class Row extends SaleRecord {
+        private final int index;
+
+        Row(int index) {
+            this.index = index;
+        }
+
+        @Override public String getSalesId() { return SalesStore.this.getSalesId(index); }
+        @Override public String getType() { return types.decode(typeCodes[index]); }
+        @Override public String getName() { return names.decode(nameCodes[index]); }
+        @Override public int getQuantity() { return quantities[index]; }
+        @Override public double getUnitPrice() { return unitPriceCents[index] / 100.0; }
+        @Override public double getTotal() { return totalCents[index] / 100.0; }
+        @Override public String getSaleDateTime() { return SalesStore.this.getSaleDateTime(index); }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public SaleRecord get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        return new Row(index);
+    }
+
+    // Copy a record into the columns; the record itself is not kept
+    @Override
+    public boolean add(SaleRecord record) {
+        if (size == ids.length) grow();
+        int row = size;
+
+        String salesId = record.getSalesId();
+        long id = Long.parseLong(salesId);
+        if (row > 0 && id < ids[row - 1]) inIdOrder = false;
+        ids[row] = id;
+        if (!SaleIdAllocator.format(id).equals(salesId)) oddIds.put(row, salesId);
+
+        typeCodes[row] = types.encode(record.getType());
+        nameCodes[row] = names.encode(record.getName());
+        quantities[row] = record.getQuantity();
+        unitPriceCents[row] = Math.round(record.getUnitPrice() * 100);
+        totalCents[row] = Math.round(record.getTotal() * 100);
+
+        String dateTime = record.getSaleDateTime();
+        epochSeconds[row] = parseEpochSecond(dateTime);
+        if (epochSeconds[row] == NO_TIME || !formatEpochSecond(epochSeconds[row]).equals(dateTime)) {
+            oddDates.put(row, dateTime);
+        }
+
+        size++;
+        modCount++;
+        return true;
+    }
+
+    // Take on the thread that appends; see Snapshot
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // True if record order is sales ID order. Concurrent tills (PosServer with group commit) take their
+    // IDs before their batch is written, so a file can hold a few sales out of order.
+    public boolean isInIdOrder() {
+        return inIdOrder;
+    }
+
+    // Typed column reads, for callers that want to skip the String forms
+    public long getNumericId(int row) { return ids[row]; }
+    public String getType(int row) { return types.decode(typeCodes[row]); }
+    public String getName(int row) { return names.decode(nameCodes[row]); }
+    public int getQuantity(int row) { return quantities[row]; }
+    public long getUnitPriceCents(int row) { return unitPriceCents[row]; }
+    public long getTotalCents(int row) { return totalCents[row]; }
+    // Wall-clock time of the sale as seconds since 1970-01-01T00:00 (no zone); Long.MIN_VALUE if unparseable
+    public long getEpochSecond(int row) { return epochSeconds[row]; }
+
+    public String getSalesId(int row) {
+        String odd = oddIds.isEmpty() ? null : oddIds.get(row);
+        return odd != null ? odd : SaleIdAllocator.format(ids[row]);
+    }
+
+    public String getSaleDateTime(int row) {
+        String odd = oddDates.isEmpty() ? null : oddDates.get(row);
+        return odd != null ? odd : formatEpochSecond(epochSeconds[row]);
+    }
+
+    private static long parseEpochSecond(String dateTime) {
+        try {
+            return LocalDateTime.parse(dateTime, DATE_TIME_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+
+    private static String formatEpochSecond(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(DATE_TIME_FORMAT);
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPriceCents = Arrays.copyOf(unitPriceCents, capacity);
+        totalCents = Arrays.copyOf(totalCents, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+    }
+
+    // Heap per record, ArrayList<SaleRecord> vs SalesStore.
+    // Usage: SalesStore [records]   (run with enough -Xmx for the list version)
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+        long before = usedHeap();
+        List<SaleRecord> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Every field a fresh String, as parsing a line of sales_records.txt produces
+            list.add(SalesJournal.parseLine(sampleLine(i, start)));
+        }
+        long listBytes = usedHeap() - before;
+        System.out.printf("ArrayList<SaleRecord>: %d records, %.1f bytes/record%n", list.size(), (double) listBytes / count);
+        list = null;
+
+        before = usedHeap();
+        SalesStore store = new SalesStore();
+        for (int i = 0; i < count; i++) {
+            store.add(SalesJournal.parseLine(sampleLine(i, start)));
+        }
+        long storeBytes = usedHeap() - before;
+        System.out.printf("SalesStore:            %d records, %.1f bytes/record%n", store.size(), (double) storeBytes / count);
+        System.out.printf("Reduction: %.1fx%n", (double) listBytes / storeBytes);
+    }
+
+    private static String sampleLine(int i, LocalDateTime start) {
+        int quantity = 1 + i % 5;
+        long priceCents = 1050 + (i % 90) * 100;
+        return SaleIdAllocator.format(i + 1) + ",Type" + (i % 14) + ",Item " + (i % 500) + "," + quantity
+                + "," + InventoryTableModel.formatPrice(priceCents) + "," + InventoryTableModel.formatPrice(priceCents * quantity)
+                + "," + start.plusSeconds(i * 37L).format(DATE_TIME_FORMAT);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
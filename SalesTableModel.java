@@ -0,0 +1,193 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Sales grid: a view over the inventory model plus the cashier's per-row
+// selection and sale quantity. Item columns are read straight from the
+// inventory arrays; only the two editable columns are stored here.
+// Inventory changes are forwarded as row-level events, so a sale repaints
+// only the rows it touched and keeps the selection and scroll position.
+public class SalesTableModel extends AbstractTableModel implements TableModelListener {
+
+    // Column positions
+    public static final int SELECT = 0;
+    public static final int ID = 1;
+    public static final int TYPE = 2;
+    public static final int NAME = 3;
+    public static final int PRICE = 4;
+    public static final int SALE_QUANTITY = 5;
+    public static final int AVAILABLE_QUANTITY = 6;
+
+    // Sale quantity markers
+    public static final int EMPTY = -1;
+    public static final int INVALID = -2;
+
+    private static final String[] COLUMN_NAMES = {"Select", "ID", "Type", "Name", "Price", "Sale Quantity", "Available Quantity"};
+
+    private final InventoryTableModel inventory;
+    private BitSet selected = new BitSet(); // ticked rows, scanned with nextSetBit
+    private int[] saleQuantities = new int[0];
+
+    public SalesTableModel(InventoryTableModel inventory) {
+        this.inventory = inventory;
+        reload();
+        inventory.addTableModelListener(this);
+    }
+
+    // Stop following the inventory (when the sales window closes)
+    public void detach() {
+        inventory.removeTableModelListener(this);
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            reload();
+            return;
+        }
+
+        switch (e.getType()) {
+            case TableModelEvent.INSERT:
+                insertRows(first, last - first + 1);
+                fireTableRowsInserted(first, last);
+                break;
+            case TableModelEvent.DELETE:
+                deleteRows(first, last - first + 1);
+                fireTableRowsDeleted(first, last);
+                break;
+            default:
+                // Sales rates and days of stock are not shown here
+                if (e.getColumn() > InventoryTableModel.QUANTITY) break;
+                if ((e.getColumn() == InventoryTableModel.QUANTITY || InventoryTableModel.isStockUpdate(e)) && first == last) {
+                    fireTableCellUpdated(first, AVAILABLE_QUANTITY);
+                } else {
+                    fireTableRowsUpdated(first, last);
+                }
+                break;
+        }
+    }
+
+    private void insertRows(int at, int count) {
+        int rows = saleQuantities.length;
+        int[] newQuantities = new int[rows + count];
+        System.arraycopy(saleQuantities, 0, newQuantities, 0, at);
+        Arrays.fill(newQuantities, at, at + count, EMPTY);
+        System.arraycopy(saleQuantities, at, newQuantities, at + count, rows - at);
+        saleQuantities = newQuantities;
+        selected = shiftSelection(at, at, count);
+    }
+
+    private void deleteRows(int at, int count) {
+        int rows = saleQuantities.length;
+        int[] newQuantities = new int[rows - count];
+        System.arraycopy(saleQuantities, 0, newQuantities, 0, at);
+        System.arraycopy(saleQuantities, at + count, newQuantities, at, rows - at - count);
+        saleQuantities = newQuantities;
+        selected = shiftSelection(at, at + count, -count);
+    }
+
+    // Keep ticks below 'keepBelow', move ticks from 'from' onwards by 'offset'
+    private BitSet shiftSelection(int keepBelow, int from, int offset) {
+        BitSet shifted = selected.get(0, keepBelow);
+        for (int row = selected.nextSetBit(from); row >= 0; row = selected.nextSetBit(row + 1)) {
+            shifted.set(row + offset);
+        }
+        return shifted;
+    }
+
+    // Match the inventory rows again and clear every selection and sale quantity
+    public void reload() {
+        int rows = inventory.getRowCount();
+        selected = new BitSet(rows);
+        saleQuantities = new int[rows];
+        Arrays.fill(saleQuantities, EMPTY);
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return saleQuantities.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        if (column == SELECT) return Boolean.class; // Checkbox column
+        if (column == AVAILABLE_QUANTITY) return Integer.class;
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == SELECT || column == SALE_QUANTITY; // Allow editing for checkbox and sale quantity
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case SELECT: return selected.get(row);
+            case ID: return inventory.getId(row);
+            case TYPE: return inventory.getType(row);
+            case NAME: return inventory.getName(row);
+            case PRICE: return InventoryTableModel.formatPrice(inventory.getPriceCents(row));
+            case SALE_QUANTITY: return saleQuantities[row] < 0 ? "" : String.valueOf(saleQuantities[row]);
+            case AVAILABLE_QUANTITY: return inventory.getQuantity(row);
+            default: throw new IllegalArgumentException("No column " + column);
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == SELECT) {
+            selected.set(row, Boolean.TRUE.equals(value));
+        } else if (column == SALE_QUANTITY) {
+            saleQuantities[row] = parseSaleQuantity(value == null ? "" : value.toString().trim());
+        } else {
+            return;
+        }
+        fireTableCellUpdated(row, column);
+    }
+
+    // Parsed once when the cashier edits the cell
+    private static int parseSaleQuantity(String text) {
+        if (text.isEmpty()) return EMPTY;
+        try {
+            int qty = Integer.parseInt(text);
+            return qty < 0 ? INVALID : qty;
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    // Typed getters
+    public boolean isSelected(int row) { return selected.get(row); }
+
+    // Next ticked row at or after 'from', or -1; lets a sale visit only the ticked rows
+    public int nextSelectedRow(int from) { return selected.nextSetBit(from); }
+    public int getSaleQuantity(int row) { return saleQuantities[row]; }
+    public int getAvailableQuantity(int row) { return inventory.getQuantity(row); }
+
+    public void clearSaleQuantity(int row) {
+        setValueAt("", row, SALE_QUANTITY);
+    }
+
+    // Untick a sold row and clear its quantity
+    public void clearSale(int row) {
+        selected.clear(row);
+        saleQuantities[row] = EMPTY;
+        fireTableRowsUpdated(row, row);
+    }
+}
@@ -0,0 +1,128 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Time-ordered index over a SalesStore for date-range queries.
+// Sales are appended in time order, so the index is normally just the row
+// numbers with their timestamps and a new sale costs O(1); a sale stamped
+// earlier than the last one (clock change, import) is inserted in place.
+// Lookups binary-search the timestamps: O(log n + k) for k matching sales.
+// A second, per-item copy of the same structure answers item queries without
+// touching other items' sales.
+public class SalesTimeIndex {
+
+    // Rows sorted by timestamp, with the timestamps alongside for binary search
+    private static final class Postings {
+        private int size;
+        private long[] times = new long[16];
+        private int[] rows = new int[16];
+
+        void add(long time, int row) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int at = size;
+            if (size > 0 && time < times[size - 1]) {
+                at = upperBound(time);
+                System.arraycopy(times, at, times, at + 1, size - at);
+                System.arraycopy(rows, at, rows, at + 1, size - at);
+            }
+            times[at] = time;
+            rows[at] = row;
+            size++;
+        }
+
+        // Rows with from <= time < to, in time order
+        int[] range(long from, long to) {
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            return start >= end ? new int[0] : Arrays.copyOfRange(rows, start, end);
+        }
+
+        // First position whose time is >= t
+        private int lowerBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < t) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // First position whose time is > t (keeps equal timestamps in arrival order)
+        private int upperBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= t) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private final SalesStore store;
+    private final Postings all = new Postings();
+    private final Map<String, Postings> byItem = new HashMap<>();
+    private int indexed;
+
+    public SalesTimeIndex(SalesStore store) {
+        this.store = store;
+        sync();
+    }
+
+    // Index any rows appended to the store since the last call
+    public void sync() {
+        for (int row = indexed; row < store.size(); row++) {
+            long time = store.getEpochSecond(row);
+            all.add(time, row);
+            byItem.computeIfAbsent(store.getName(row), k -> new Postings()).add(time, row);
+        }
+        indexed = store.size();
+    }
+
+    // Sales with from <= time < to
+    public int[] between(LocalDateTime from, LocalDateTime to) {
+        return all.range(epochSecond(from), epochSecond(to));
+    }
+
+    // Sales on the days from..to, both inclusive
+    public int[] betweenDays(LocalDate from, LocalDate to) {
+        return between(from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+    }
+
+    public int[] today() {
+        LocalDate today = LocalDate.now();
+        return betweenDays(today, today);
+    }
+
+    // Sales of one item on the days from..to, both inclusive
+    public int[] betweenDaysForItem(String name, LocalDate from, LocalDate to) {
+        Postings postings = byItem.get(name);
+        if (postings == null) return new int[0];
+        return postings.range(epochSecond(from.atStartOfDay()), epochSecond(to.plusDays(1).atStartOfDay()));
+    }
+
+    // Sales of one item today and on the days-1 days before it
+    public int[] lastDaysForItem(String name, int days) {
+        LocalDate today = LocalDate.now();
+        return betweenDaysForItem(name, today.minusDays(days - 1), today);
+    }
+
+    // The matching sales as records (flyweights, read on demand)
+    public List<SaleRecord> records(int[] rows) {
+        return new AbstractList<SaleRecord>() {
+            @Override public SaleRecord get(int i) { return store.get(rows[i]); }
+            @Override public int size() { return rows.length; }
+        };
+    }
+
+    private static long epochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Units sold per item over the last 7, 30 and 90 days, and the days of stock left at that pace.
+//
+// Each item keeps a running total per window; the ring holds, for each of the last 90 days,
+// the (item, quantity) pairs sold that day. A sale is one append and three additions. When
+// the day moves on, the day leaving each window is subtracted from that window's totals, so
+// every sale line is taken out exactly once per window: O(1) per sale however long the
+// history is, and nothing ever rescans it.
+//
+// Items are keyed by name, as sale records are, so an item's history stays under its old
+// name when it is renamed. Days are local calendar days, today included.
+// Sales are recorded on the EDT and bootstrapped on the persistence executor, so methods are synchronized.
+public class SalesVelocity {
+
+    public static final int WEEK = 0;
+    public static final int MONTH = 1;
+    public static final int QUARTER = 2;
+    private static final int[] WINDOW_DAYS = {7, 30, 90};
+    private static final int DAYS = 90; // the longest window
+
+    private static final Metrics.Histogram BOOTSTRAP_TIME = Metrics.get().histogram("pos_sales_velocity_bootstrap_seconds",
+            "Time to read the last 90 days of sales for the velocity columns");
+
+    // (item, quantity) pairs sold on one day, in the order they were recorded
+    private static final class Day {
+        int size;
+        int[] items = new int[16];
+        int[] quantities = new int[16];
+
+        void add(int item, int quantity) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            items[size] = item;
+            quantities[size] = quantity;
+            size++;
+        }
+    }
+
+    private final StringDictionary names = new StringDictionary();
+    private final int[][] totals = new int[WINDOW_DAYS.length][]; // [window][item code] -> units
+    private final Day[] ring = new Day[DAYS];                     // ring[epochDay % DAYS]
+    private long today = Long.MIN_VALUE;                          // newest day in the ring
+    private long firstDay;                                        // oldest day the history covers
+
+    public SalesVelocity() {
+        for (int w = 0; w < totals.length; w++) totals[w] = new int[64];
+        for (int d = 0; d < DAYS; d++) ring[d] = new Day();
+        Metrics.get().gauge("pos_sales_velocity_items", "Item names with sales in the velocity windows", names::size);
+    }
+
+    // Replace the counters with the sales of the last 90 days, read from the end of the sales file.
+    // File I/O: call on the persistence executor.
+    public synchronized void bootstrap(Path salesFile) throws IOException {
+        long started = System.nanoTime();
+        for (int[] window : totals) Arrays.fill(window, 0);
+        for (Day day : ring) day.size = 0;
+        today = LocalDate.now().toEpochDay();
+        firstDay = today;
+        String[] lastDate = {null};
+        long[] lastDay = {0};
+        boolean older = SalesJournal.readSince(salesFile, LocalDate.ofEpochDay(today - DAYS + 1), record -> {
+            // Lines come newest first and a day's lines are together, so each date is parsed once
+            String date = record.getSaleDateTime().substring(0, 10);
+            if (!date.equals(lastDate[0])) {
+                lastDate[0] = date;
+                lastDay[0] = LocalDate.parse(date).toEpochDay();
+            }
+            add(record.getName(), lastDay[0], record.getQuantity());
+        });
+        if (older) firstDay = today - DAYS + 1;
+        BOOTSTRAP_TIME.recordSince(started);
+    }
+
+    // Count the lines of one committed sale
+    public synchronized void recordAll(Iterable<SaleRecord> sale) {
+        for (SaleRecord record : sale) {
+            add(record.getName(), LocalDate.parse(record.getSaleDateTime().substring(0, 10)).toEpochDay(), record.getQuantity());
+        }
+    }
+
+    // Units of the item sold in the window (WEEK, MONTH or QUARTER) ending today
+    public synchronized int getUnits(String name, int window) {
+        advanceTo(LocalDate.now().toEpochDay());
+        int item = names.find(name);
+        return item < 0 || item >= totals[window].length ? 0 : totals[window][item];
+    }
+
+    // Average units per day over the window. A history younger than the window is averaged over its own length.
+    public synchronized double getUnitsPerDay(String name, int window) {
+        int units = getUnits(name, window);
+        long covered = Math.min(WINDOW_DAYS[window], today - firstDay + 1);
+        return units == 0 ? 0 : (double) units / covered;
+    }
+
+    // Days until the stock runs out at the 30-day pace (the 90-day pace for items that did not sell
+    // in the last 30 days); -1 if the item has not sold in 90 days
+    public synchronized int getDaysOfStock(String name, int stock) {
+        double perDay = getUnitsPerDay(name, MONTH);
+        if (perDay == 0) perDay = getUnitsPerDay(name, QUARTER);
+        if (perDay == 0) return -1;
+        return (int) Math.min(Integer.MAX_VALUE, Math.floor(Math.max(0, stock) / perDay));
+    }
+
+    private void add(String name, long day, int quantity) {
+        if (day > today) advanceTo(day);
+        long age = today - day;
+        if (age < 0 || age >= DAYS) return;
+        if (day < firstDay) firstDay = day;
+        int item = names.encode(name);
+        if (item >= totals[0].length) {
+            int capacity = Math.max(item + 1, totals[0].length * 2);
+            for (int w = 0; w < totals.length; w++) totals[w] = Arrays.copyOf(totals[w], capacity);
+        }
+        ring[(int) Math.floorMod(day, (long) DAYS)].add(item, quantity);
+        for (int w = 0; w < WINDOW_DAYS.length; w++) {
+            if (age < WINDOW_DAYS[w]) totals[w][item] += quantity;
+        }
+    }
+
+    // Move the newest day forward, taking each day that falls out of a window off that window's totals
+    private void advanceTo(long day) {
+        if (today == Long.MIN_VALUE) {
+            today = day;
+            firstDay = day;
+            return;
+        }
+        if (day <= today) return;
+        if (day - today >= DAYS) {
+            for (int[] window : totals) Arrays.fill(window, 0);
+            for (Day d : ring) d.size = 0;
+            today = day;
+            return;
+        }
+        while (today < day) {
+            today++;
+            for (int w = 0; w < WINDOW_DAYS.length; w++) {
+                Day leaving = ring[(int) Math.floorMod(today - WINDOW_DAYS[w], (long) DAYS)];
+                int[] window = totals[w];
+                for (int i = 0; i < leaving.size; i++) window[leaving.items[i]] -= leaving.quantities[i];
+            }
+            ring[(int) Math.floorMod(today, (long) DAYS)].size = 0; // the 90-day window's leaving day is today's slot
+        }
+    }
+}
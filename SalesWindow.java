@@ -1,64 +1,110 @@
 import javax.swing.*;
-import javax.swing.event.TableModelListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 public class SalesWindow extends JFrame {
 
     // Table and Models
     private JTable table;
-    private DefaultTableModel inventoryModel;
-    private DefaultTableModel salesDisplayModel;
+    private InventoryTableModel inventoryModel;
+    private SalesTableModel salesDisplayModel;
+    private ItemSearchIndex searchIndex;
+    private TableRowSorter<SalesTableModel> sorter;
+    private JTextField searchField;
+    private JComboBox<String> typeFilterCombo;
+    private CheckoutEngine checkoutEngine;
+    private ItemJournal itemJournal;
 
     // Buttons
     private JButton processSaleButton, salesReportButton, switchToInventoryButton;
 
-    // Stores sale records in memory
-    private List<SaleRecord> salesList = new ArrayList<>();
+    private static final String ALL_ITEMS = "All items";
 
-    // File name for storing sales data
-    private static final String SALES_FILE_NAME = "sales_records.txt";
+    private static final Metrics.Counter SALES = Metrics.get().counter("pos_sales_total", "Sales processed");
+    private static final Metrics.Counter SALE_LINES = Metrics.get().counter("pos_sale_lines_total", "Sale lines processed");
+    private static final Metrics.Counter SALES_REJECTED = Metrics.get().counter("pos_sales_rejected_total",
+            "Sales refused at checkout for insufficient stock");
+    private static final Metrics.Histogram PROCESS_TIME = Metrics.get().histogram("pos_sale_process_seconds",
+            "Time on the EDT from Process Sale to the sale being queued for saving");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.get().histogram("pos_sale_save_seconds",
+            "Time from queueing a sale until its save is confirmed");
+
+    // Sales history shared across window instances; loaded lazily
+    private final SalesHistory salesHistory = SalesHistory.get();
 
     // Constructor: Initializes the Sales Window
-    public SalesWindow(JFrame inventoryWindow, DefaultTableModel sharedModel) {
+    public SalesWindow(JFrame inventoryWindow, InventoryTableModel sharedModel, ItemSearchIndex searchIndex,
+                       CheckoutEngine checkoutEngine, ItemJournal itemJournal) {
         setTitle("Sales System");
         setSize(1000, 500);
         setLocationRelativeTo(null);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 
         this.inventoryModel = sharedModel;
+        this.searchIndex = searchIndex;
+        this.checkoutEngine = checkoutEngine;
+        this.itemJournal = itemJournal;
 
-        // Define columns for the sales table
-        String[] columnNames = {"Select", "ID", "Type", "Name", "Price", "Sale Quantity", "Available Quantity"};
-        salesDisplayModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 0) return Boolean.class; // Checkbox column
-                if (columnIndex == 5) return String.class; // Sale Quantity column
-                return super.getColumnClass(columnIndex);
-            }
-
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 0 || column == 5; // Allow editing for checkbox and sale quantity
-            }
-        };
+        // Sales table: a view over the inventory rows plus selection and sale quantity
+        salesDisplayModel = new SalesTableModel(inventoryModel);
 
         // Initialize JTable
         table = new JTable(salesDisplayModel);
+        sorter = new TableRowSorter<>(salesDisplayModel);
+        table.setRowSorter(sorter);
         JScrollPane scrollPane = new JScrollPane(table);
 
+        // Type-ahead search by ID, type or name, shared index with the inventory window
+        searchField = new JTextField(20);
+        typeFilterCombo = new JComboBox<>();
+        typeFilterCombo.addItem(InventoryWindow.ALL_TYPES);
+        Set<String> types = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (int row = 0; row < inventoryModel.getRowCount(); row++) {
+            types.add(inventoryModel.getType(row));
+        }
+        for (String type : types) {
+            typeFilterCombo.addItem(type);
+        }
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void removeUpdate(DocumentEvent e) { applyFilter(); }
+            @Override public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        });
+        typeFilterCombo.addActionListener(e -> applyFilter());
+
+        // Items added while a search is active must be matched against it too
+        salesDisplayModel.addTableModelListener(e -> {
+            if (sorter.getRowFilter() != null && e.getType() == javax.swing.event.TableModelEvent.INSERT) {
+                SwingUtilities.invokeLater(this::applyFilter);
+            }
+        });
+
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search ID, type or name:"));
+        searchPanel.add(searchField);
+        searchPanel.add(typeFilterCombo);
+
         // Set checkbox column width and behavior
         TableColumnModel tcm = table.getColumnModel();
         tcm.getColumn(0).setMaxWidth(50);
@@ -78,27 +124,27 @@ public class SalesWindow extends JFrame {
         });
         tcm.getColumn(5).setCellEditor(new DefaultCellEditor(saleQtyInput));
 
-        // Load inventory data into sales display table
-        loadSalesDisplayTable();
-        // Load previously saved sales records
-        loadSalesRecords();
 
         // Create and add buttons
         processSaleButton = new JButton("Process Sale");
         salesReportButton = new JButton("Sales Report");
         switchToInventoryButton = new JButton("Inventory Mode");
 
+        // Open the sales journal (repairs a torn last line and reads the next sale ID)
+        openSalesHistory();
+
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(processSaleButton);
         buttonPanel.add(salesReportButton);
         buttonPanel.add(switchToInventoryButton);
 
+        add(searchPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
         add(buttonPanel, BorderLayout.SOUTH);
 
         // Button listeners
         processSaleButton.addActionListener(e -> processSale());
-        salesReportButton.addActionListener(e -> showSalesReport());
+        salesReportButton.addActionListener(e -> loadSalesRecords());
         switchToInventoryButton.addActionListener(e -> {
             ((InventoryWindow) inventoryWindow).saveToFile();
             inventoryWindow.setVisible(true);
@@ -107,206 +153,425 @@ public class SalesWindow extends JFrame {
 
         // Listener to validate quantity changes
         salesDisplayModel.addTableModelListener(e -> {
-            if (e.getColumn() == 5) {
+            if (e.getColumn() == SalesTableModel.SALE_QUANTITY) {
                 int row = e.getFirstRow();
-                String saleQtyStr = salesDisplayModel.getValueAt(row, 5).toString();
-                if (!saleQtyStr.isEmpty()) {
-                    try {
-                        int saleQty = Integer.parseInt(saleQtyStr);
-                        int availableQty = Integer.parseInt(salesDisplayModel.getValueAt(row, 6).toString());
-
-                        if (saleQty < 0) {
-                            JOptionPane.showMessageDialog(this, "Sale quantity cannot be negative.", "Input Error", JOptionPane.WARNING_MESSAGE);
-                            salesDisplayModel.setValueAt("", row, 5);
-                        } else if (saleQty > availableQty) {
-                            JOptionPane.showMessageDialog(this, "Sale quantity exceeds available quantity.", "Input Error", JOptionPane.WARNING_MESSAGE);
-                            salesDisplayModel.setValueAt("", row, 5);
-                        }
-                    } catch (NumberFormatException ex) {
-                        JOptionPane.showMessageDialog(this, "Please enter a valid number for sale quantity.", "Input Error", JOptionPane.WARNING_MESSAGE);
-                        salesDisplayModel.setValueAt("", row, 5);
-                    }
+                int saleQty = salesDisplayModel.getSaleQuantity(row);
+                if (saleQty == SalesTableModel.INVALID) {
+                    JOptionPane.showMessageDialog(this, "Please enter a valid number for sale quantity.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                    salesDisplayModel.clearSaleQuantity(row);
+                } else if (saleQty > salesDisplayModel.getAvailableQuantity(row)) {
+                    JOptionPane.showMessageDialog(this, "Sale quantity exceeds available quantity.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                    salesDisplayModel.clearSaleQuantity(row);
                 }
             }
         });
 
-        // Save sales when closing the window
+        // Sales are already on disk; just stop following the inventory when the window goes away
         addWindowListener(new WindowAdapter() {
             @Override
-            public void windowClosing(WindowEvent e) {
-                saveSalesRecords();
-                super.windowClosing(e);
+            public void windowClosed(WindowEvent e) {
+                salesDisplayModel.detach();
             }
         });
     }
 
-    // Load current inventory into the sales table view
-    private void loadSalesDisplayTable() {
-        salesDisplayModel.setRowCount(0);
-        for (int i = 0; i < inventoryModel.getRowCount(); i++) {
-            Vector<?> rowData = inventoryModel.getDataVector().elementAt(i);
-            salesDisplayModel.addRow(new Object[]{
-                    false, // Select checkbox default false
-                    rowData.get(0), // ID
-                    rowData.get(1), // Type
-                    rowData.get(2), // Name
-                    rowData.get(3), // Price
-                    "",              // Sale Quantity (empty)
-                    rowData.get(4)   // Available Quantity
-            });
-        }
+    // Show only items matching the search text and type; ticks and quantities on hidden rows are kept,
+    // and processSale lists them for confirmation before selling
+    private void applyFilter() {
+        String type = (String) typeFilterCombo.getSelectedItem();
+        sorter.setRowFilter(searchIndex.filterFor(searchField.getText(), InventoryWindow.ALL_TYPES.equals(type) ? null : type));
     }
 
-    // Process the selected sale(s)
+    // Process the selected sale(s).
+    // Every ticked row is checked first, then the checkout engine takes all the stock
+    // at once, so a rejected sale leaves the inventory untouched.
     private void processSale() {
-        List<SaleRecord> currentSaleItems = new ArrayList<>();
-        double totalSaleAmount = 0.0;
-        String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-
-        for (int i = 0; i < salesDisplayModel.getRowCount(); i++) {
-            Boolean selected = (Boolean) salesDisplayModel.getValueAt(i, 0);
-            if (selected) {
-                String type = salesDisplayModel.getValueAt(i, 2).toString();
-                String name = salesDisplayModel.getValueAt(i, 3).toString();
-                double price = Double.parseDouble(salesDisplayModel.getValueAt(i, 4).toString());
-                int availableQty = Integer.parseInt(salesDisplayModel.getValueAt(i, 6).toString());
-                String saleQtyStr = salesDisplayModel.getValueAt(i, 5).toString();
-
-                if (saleQtyStr.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, "Please enter a sale quantity for selected item: " + name, "Input Error", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
-
-                try {
-                    int saleQty = Integer.parseInt(saleQtyStr);
-
-                    if (saleQty <= 0) {
-                        JOptionPane.showMessageDialog(this, "Sale quantity for " + name + " must be greater than zero.", "Input Error", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    if (saleQty > availableQty) {
-                        JOptionPane.showMessageDialog(this, "Cannot sell " + saleQty + " units of " + name + ". Only " + availableQty + " available.", "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-
-                    double itemTotal = price * saleQty;
-                    totalSaleAmount += itemTotal;
-                    currentSaleItems.add(new SaleRecord(type, name, saleQty, price, itemTotal, currentDateTime));
-
-                    // Update quantity in inventory model
-                    for (int j = 0; j < inventoryModel.getRowCount(); j++) {
-                        if (inventoryModel.getValueAt(j, 2).toString().equals(name)) {
-                            int newQuantity = availableQty - saleQty;
-                            inventoryModel.setValueAt(String.valueOf(newQuantity), j, 4);
-                            break;
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    JOptionPane.showMessageDialog(this, "Invalid quantity for " + name + ". Please enter a valid number.", "Input Error", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+        long started = System.nanoTime();
+        List<Integer> soldRows = new ArrayList<>();
+        List<CheckoutEngine.Line> lines = new ArrayList<>();
+
+        // Visit only the ticked rows
+        for (int i = salesDisplayModel.nextSelectedRow(0); i >= 0; i = salesDisplayModel.nextSelectedRow(i + 1)) {
+            // Sales rows line up with inventory rows, so typed values come straight from the arrays
+            String name = inventoryModel.getName(i);
+            int availableQty = inventoryModel.getQuantity(i);
+            int saleQty = salesDisplayModel.getSaleQuantity(i);
+
+            if (saleQty == SalesTableModel.EMPTY) {
+                JOptionPane.showMessageDialog(this, "Please enter a sale quantity for selected item: " + name, "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (saleQty == SalesTableModel.INVALID) {
+                JOptionPane.showMessageDialog(this, "Invalid quantity for " + name + ". Please enter a valid number.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
             }
+            if (saleQty == 0) {
+                JOptionPane.showMessageDialog(this, "Sale quantity for " + name + " must be greater than zero.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (saleQty > availableQty) {
+                JOptionPane.showMessageDialog(this, "Cannot sell " + saleQty + " units of " + name + ". Only " + availableQty + " available.", "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            lines.add(new CheckoutEngine.Line(inventoryModel.getNumericId(i), saleQty));
+            soldRows.add(i);
         }
 
-        if (currentSaleItems.isEmpty()) {
+        if (lines.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No items selected for sale.", "No Selection", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (!confirmHiddenLines(soldRows, lines)) return;
+
+        // Another till may have sold the same items since this one last looked
+        CheckoutEngine.Result result = checkoutEngine.checkout(lines);
+        if (!result.isCommitted()) {
+            SALES_REJECTED.increment();
+            int available = Math.max(0, result.getAvailable());
+            JOptionPane.showMessageDialog(this, "Cannot complete the sale: item " + InventoryTableModel.formatId(result.getFailedItemId())
+                    + " has only " + available + " available.", "Insufficient Stock", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
-        // Add successful sales to the list
-        salesList.addAll(currentSaleItems);
-        loadSalesDisplayTable(); // Refresh table after sale
-        JOptionPane.showMessageDialog(this, String.format("Sale processed successfully!\nTotal Amount: $%.2f", totalSaleAmount), "Sale Complete", JOptionPane.INFORMATION_MESSAGE);
-        saveSalesRecords(); // Save to file
+        // Stock is taken; the inventory table already follows the engine
+        List<SaleRecord> currentSaleItems = new ArrayList<>();
+        List<String> stockDeltas = new ArrayList<>();
+        double totalSaleAmount = 0.0;
+        String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        for (int n = 0; n < soldRows.size(); n++) {
+            int i = soldRows.get(n);
+            int saleQty = lines.get(n).quantity;
+            long priceCents = inventoryModel.getPriceCents(i);
+            double price = priceCents / 100.0;
+            double itemTotal = priceCents * saleQty / 100.0;
+            totalSaleAmount += itemTotal;
+            currentSaleItems.add(new SaleRecord(salesHistory.nextSaleId(), inventoryModel.getType(i), inventoryModel.getName(i), saleQty, price, itemTotal, currentDateTime));
+            stockDeltas.add(ItemJournal.stockDeltaEntry(inventoryModel.getId(i), -saleQty));
+        }
+
+        for (int row : soldRows) {
+            salesDisplayModel.clearSale(row); // Reset only the rows that were sold
+        }
+
+        SALES.increment();
+        SALE_LINES.add(currentSaleItems.size());
+        PROCESS_TIME.recordSince(started);
+
+        // Add to the history and append only this sale to file; confirm once it is on disk
+        double saleAmount = totalSaleAmount;
+        saveSalesRecords(currentSaleItems, stockDeltas, () -> JOptionPane.showMessageDialog(this,
+                String.format("Sale processed successfully!\nTotal Amount: $%.2f", saleAmount), "Sale Complete", JOptionPane.INFORMATION_MESSAGE));
     }
 
-    // Show a summary report of all sales
+    // Show a summary report from the running totals.
+    // The All Sales tab is a lazy table that only reads the rows on screen.
     private void showSalesReport() {
+        List<SaleRecord> salesList = salesHistory.getRecords();
+        SalesRollup salesRollup = salesHistory.getRollup();
         if (salesList.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No sales records available yet.", "Sales Report", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
 
-        StringBuilder report = new StringBuilder("Sales Report:\n\n");
-        double grandTotal = 0.0;
-
-        for (SaleRecord record : salesList) {
-            report.append("Sales ID: ").append(record.getSalesId()).append("\n");
-            report.append("Date/Time: ").append(record.getSaleDateTime()).append("\n");
-            report.append("   Type: ").append(record.getType()).append("\n");
-            report.append("   Name: ").append(record.getName()).append("\n");
-            report.append("   Quantity: ").append(record.getQuantity()).append("\n");
-            report.append(String.format("   Unit Price: $%.2f\n", record.getUnitPrice()));
-            report.append(String.format("   Total: $%.2f\n", record.getTotal()));
-            report.append("--------------------\n");
-            grandTotal += record.getTotal();
-        }
+        SalesRollup.Totals grand = salesRollup.getGrandTotals();
+        String today = LocalDate.now().toString();
+        SalesRollup.Totals todayTotals = salesRollup.getDay(today);
+
+        JTextArea summary = new JTextArea(String.format("Sales Report:%n%n"
+                        + "Sales lines: %d%nUnits sold: %d%nGrand Total Sales: $%.2f%n%n"
+                        + "Today (%s): %d lines, %d units, $%.2f",
+                grand.getLines(), grand.getUnits(), grand.getRevenue(),
+                today, todayTotals.getLines(), todayTotals.getUnits(), todayTotals.getRevenue()));
+        summary.setEditable(false);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Summary", new JScrollPane(summary));
+        tabs.addTab("By Month", rollupTable("Month", salesRollup.getByMonth()));
+        tabs.addTab("By Day", rollupTable("Day", salesRollup.getByDay()));
+        tabs.addTab("By Type", rollupTable("Type", salesRollup.getByType()));
+        tabs.addTab("By Item", rollupTable("Item", salesRollup.getByItem()));
 
-        report.append(String.format("\nGrand Total Sales: $%.2f", grandTotal));
+        tabs.addTab("All Sales", salesListPanel(new SalesReportTableModel(salesHistory.getStore())));
+        tabs.addTab("Date Range", dateRangePanel());
+        tabs.addTab("Analytics", analyticsPanel(salesRollup));
 
         // Show in scrollable dialog
-        JTextArea textArea = new JTextArea(report.toString());
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
-        scrollPane.setPreferredSize(new Dimension(500, 400));
-        JOptionPane.showMessageDialog(this, scrollPane, "Sales Report", JOptionPane.PLAIN_MESSAGE);
+        tabs.setPreferredSize(new Dimension(600, 400));
+        JOptionPane.showMessageDialog(this, tabs, "Sales Report", JOptionPane.PLAIN_MESSAGE);
     }
 
-    // Save all sales to file
-    private void saveSalesRecords() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(SALES_FILE_NAME))) {
-            for (SaleRecord record : salesList) {
-                writer.write(String.join(",",
-                        record.getSalesId(),
-                        record.getType(),
-                        record.getName(),
-                        String.valueOf(record.getQuantity()),
-                        String.valueOf(record.getUnitPrice()),
-                        String.valueOf(record.getTotal()),
-                        record.getSaleDateTime()
-                ));
-                writer.newLine();
+    // One row per group: key, lines, units, revenue
+    private JScrollPane rollupTable(String keyName, List<Map.Entry<String, SalesRollup.Totals>> groups) {
+        Object[][] rows = new Object[groups.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            SalesRollup.Totals totals = groups.get(i).getValue();
+            rows[i] = new Object[]{groups.get(i).getKey(), totals.getLines(), totals.getUnits(),
+                    String.format("%.2f", totals.getRevenue())};
+        }
+        JTable rollup = new JTable(rows, new Object[]{keyName, "Lines", "Units", "Revenue"});
+        rollup.setDefaultEditor(Object.class, null);
+        return new JScrollPane(rollup);
+    }
+
+    // Sortable, filterable table over every sale; cells are read only when painted
+    private JPanel salesListPanel(SalesReportTableModel reportModel) {
+        JTable salesTable = new JTable(reportModel);
+        JLabel countLabel = new JLabel();
+        Runnable updateCount = () -> countLabel.setText(reportModel.getRowCount() + " of " + reportModel.getRecordCount() + " sales");
+        updateCount.run();
+
+        // Click a header to sort, click again to reverse
+        salesTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = salesTable.columnAtPoint(e.getPoint());
+                if (column != -1) reportModel.toggleSort(salesTable.convertColumnIndexToModel(column));
             }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error saving sales records: " + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
+        });
+
+        JTextField filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            private void changed() {
+                reportModel.setFilter(filterField.getText());
+                updateCount.run();
+            }
+            @Override public void insertUpdate(DocumentEvent e) { changed(); }
+            @Override public void removeUpdate(DocumentEvent e) { changed(); }
+            @Override public void changedUpdate(DocumentEvent e) { changed(); }
+        });
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Filter by type or name:"));
+        filterPanel.add(filterField);
+        filterPanel.add(countLabel);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(filterPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(salesTable), BorderLayout.CENTER);
+        return panel;
+    }
+
+    // Sales between two days, optionally for one item, looked up through the time index
+    private JPanel dateRangePanel() {
+        SalesTimeIndex index = salesHistory.getTimeIndex();
+        LocalDate today = LocalDate.now();
+        JSpinner fromSpinner = dateSpinner(today.minusDays(6));
+        JSpinner toSpinner = dateSpinner(today);
+
+        JComboBox<String> itemCombo = new JComboBox<>();
+        itemCombo.addItem(ALL_ITEMS);
+        for (int row = 0; row < inventoryModel.getRowCount(); row++) {
+            itemCombo.addItem(inventoryModel.getName(row));
         }
+
+        JLabel totalsLabel = new JLabel();
+        JPanel results = new JPanel(new BorderLayout());
+        Runnable apply = () -> {
+            LocalDate from = spinnerDate(fromSpinner);
+            LocalDate to = spinnerDate(toSpinner);
+            String item = (String) itemCombo.getSelectedItem();
+            int[] rows = ALL_ITEMS.equals(item) ? index.betweenDays(from, to) : index.betweenDaysForItem(item, from, to);
+            List<SaleRecord> sales = index.records(rows);
+            SalesRollup.Totals totals = SalesRollup.of(sales).getGrandTotals();
+            totalsLabel.setText(String.format("%d lines, %d units, $%.2f", totals.getLines(), totals.getUnits(), totals.getRevenue()));
+            results.removeAll();
+            results.add(salesListPanel(new SalesReportTableModel(salesHistory.getStore(), rows)), BorderLayout.CENTER);
+            results.revalidate();
+            results.repaint();
+        };
+
+        JButton showButton = new JButton("Show");
+        JButton todayButton = new JButton("Today");
+        JButton last7Button = new JButton("Last 7 Days");
+        JButton last30Button = new JButton("Last 30 Days");
+        showButton.addActionListener(e -> apply.run());
+        todayButton.addActionListener(e -> setRange(fromSpinner, toSpinner, 1, apply));
+        last7Button.addActionListener(e -> setRange(fromSpinner, toSpinner, 7, apply));
+        last30Button.addActionListener(e -> setRange(fromSpinner, toSpinner, 30, apply));
+
+        JPanel pickers = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        pickers.add(new JLabel("From:"));
+        pickers.add(fromSpinner);
+        pickers.add(new JLabel("To:"));
+        pickers.add(toSpinner);
+        pickers.add(itemCombo);
+        pickers.add(showButton);
+
+        JPanel shortcuts = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        shortcuts.add(todayButton);
+        shortcuts.add(last7Button);
+        shortcuts.add(last30Button);
+        shortcuts.add(totalsLabel);
+
+        JPanel controls = new JPanel(new GridLayout(2, 1));
+        controls.add(pickers);
+        controls.add(shortcuts);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(results, BorderLayout.CENTER);
+        apply.run();
+        return panel;
     }
 
-    // Load all sales from file into memory
-    private void loadSalesRecords() {
-        File file = new File(SALES_FILE_NAME);
-        if (!file.exists()) return;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int maxId = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 7) {
-                    try {
-                        String salesId = parts[0];
-                        String type = parts[1];
-                        String name = parts[2];
-                        int quantity = Integer.parseInt(parts[3]);
-                        double unitPrice = Double.parseDouble(parts[4]);
-                        double total = Double.parseDouble(parts[5]);
-                        String saleDateTime = parts[6];
-
-                        SaleRecord record = new SaleRecord(type, name, quantity, unitPrice, total, saleDateTime);
-                        salesList.add(record);
-
-                        int parsedId = Integer.parseInt(salesId);
-                        if (parsedId > maxId) maxId = parsedId;
-
-                    } catch (NumberFormatException e) {
-                        System.err.println("Skipping malformed line in sales records file: " + line);
-                    }
-                }
+    // Top sellers, revenue by type and period and ticket size over a date range, computed in
+    // parallel off the EDT (see SalesAnalytics). Opens on the whole history.
+    private JPanel analyticsPanel(SalesRollup salesRollup) {
+        List<Map.Entry<String, SalesRollup.Totals>> days = salesRollup.getByDay();
+        LocalDate today = LocalDate.now();
+        LocalDate firstDay = today;
+        LocalDate lastDay = today;
+        try {
+            firstDay = LocalDate.parse(days.get(0).getKey());
+            lastDay = LocalDate.parse(days.get(days.size() - 1).getKey());
+        } catch (RuntimeException e) {
+            // no dated sales: default to today
+        }
+        JSpinner fromSpinner = dateSpinner(firstDay);
+        JSpinner toSpinner = dateSpinner(lastDay.isBefore(today) ? today : lastDay);
+        JSpinner topSpinner = new JSpinner(new SpinnerNumberModel(20, 1, 1000, 5));
+        JButton computeButton = new JButton("Compute");
+        JLabel summaryLabel = new JLabel();
+        JPanel results = new JPanel(new BorderLayout());
+
+        computeButton.addActionListener(e -> {
+            LocalDate from = spinnerDate(fromSpinner);
+            LocalDate to = spinnerDate(toSpinner);
+            if (to.isBefore(from)) {
+                JOptionPane.showMessageDialog(this, "The end date is before the start date.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
             }
-            // Update next ID for new SaleRecord
-            SaleRecord.setNextId(maxId + 1);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Error loading sales records: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+            int topN = (Integer) topSpinner.getValue();
+            // Rows and columns are captured here, on the EDT; the workers only read them
+            int[] rows = salesHistory.getTimeIndex().betweenDays(from, to);
+            SalesStore.Snapshot snapshot = salesHistory.snapshot();
+            computeButton.setEnabled(false);
+            summaryLabel.setText("Computing " + rows.length + " sales...");
+            CompletableFuture.supplyAsync(() -> SalesAnalytics.compute(snapshot, rows, from, to, topN, ForkJoinPool.commonPool()),
+                    ForkJoinPool.commonPool()).whenComplete((report, ex) -> SwingUtilities.invokeLater(() -> {
+                computeButton.setEnabled(true);
+                if (ex != null) {
+                    summaryLabel.setText("");
+                    JOptionPane.showMessageDialog(this, "Error computing the report: " + ex.getMessage(), "Sales Report", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                summaryLabel.setText(String.format("%d lines, %d tickets, $%.2f; average ticket $%.2f (%.2f units); %d ms",
+                        report.grand.getLines(), report.tickets, report.grand.getRevenue(), report.getAverageTicket(),
+                        report.getAverageTicketUnits(), report.elapsedNanos / 1_000_000));
+                JTabbedPane groups = new JTabbedPane();
+                groups.addTab("Top by Revenue", rollupTable("Item", report.topByRevenue));
+                groups.addTab("Top by Units", rollupTable("Item", report.topByUnits));
+                groups.addTab("By Type", rollupTable("Type", report.byType));
+                groups.addTab("By Month", rollupTable("Month", report.byMonth));
+                groups.addTab("By Day", rollupTable("Day", report.byDay));
+                results.removeAll();
+                results.add(groups, BorderLayout.CENTER);
+                results.revalidate();
+                results.repaint();
+            }));
+        });
+
+        JPanel pickers = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        pickers.add(new JLabel("From:"));
+        pickers.add(fromSpinner);
+        pickers.add(new JLabel("To:"));
+        pickers.add(toSpinner);
+        pickers.add(new JLabel("Top:"));
+        pickers.add(topSpinner);
+        pickers.add(computeButton);
+
+        JPanel controls = new JPanel(new GridLayout(2, 1));
+        controls.add(pickers);
+        controls.add(summaryLabel);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(results, BorderLayout.CENTER);
+        return panel;
+    }
+
+    // The last 'days' days up to today, then show them
+    private static void setRange(JSpinner fromSpinner, JSpinner toSpinner, int days, Runnable apply) {
+        LocalDate today = LocalDate.now();
+        fromSpinner.setValue(toDate(today.minusDays(days - 1)));
+        toSpinner.setValue(toDate(today));
+        apply.run();
+    }
+
+    private static JSpinner dateSpinner(LocalDate initial) {
+        JSpinner spinner = new JSpinner(new SpinnerDateModel());
+        spinner.setEditor(new JSpinner.DateEditor(spinner, "yyyy-MM-dd"));
+        spinner.setValue(toDate(initial));
+        return spinner;
+    }
+
+    private static LocalDate spinnerDate(JSpinner spinner) {
+        return ((Date) spinner.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    // Ticks are kept on rows the search hides, so a sale can be built over several searches.
+    // If any ticked row is out of sight, list every line and sell only once the cashier confirms.
+    private boolean confirmHiddenLines(List<Integer> soldRows, List<CheckoutEngine.Line> lines) {
+        boolean anyHidden = false;
+        StringBuilder text = new StringBuilder();
+        long totalCents = 0;
+        for (int n = 0; n < soldRows.size(); n++) {
+            int row = soldRows.get(n);
+            int quantity = lines.get(n).quantity;
+            long lineCents = inventoryModel.getPriceCents(row) * quantity;
+            totalCents += lineCents;
+            boolean hidden = table.convertRowIndexToView(row) == -1;
+            anyHidden |= hidden;
+            text.append(String.format("%s  %s  x %d = $%.2f%s%n", inventoryModel.getId(row), inventoryModel.getName(row),
+                    quantity, lineCents / 100.0, hidden ? "   (hidden by the search)" : ""));
         }
+        if (!anyHidden) return true;
+        text.append(String.format("%nTotal: $%.2f", totalCents / 100.0));
+
+        JTextArea area = new JTextArea(text.toString(), Math.min(soldRows.size() + 2, 15), 50);
+        area.setEditable(false);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("Some ticked items are hidden by the current search. Sell all of these?"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(area), BorderLayout.CENTER);
+        return JOptionPane.showConfirmDialog(this, panel, "Confirm Sale", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.WARNING_MESSAGE) == JOptionPane.OK_OPTION;
+    }
+
+    // Add one sale to the history and queue it and its stock deltas for writing; onSaved runs on the EDT once written
+    private void saveSalesRecords(List<SaleRecord> newRecords, List<String> stockDeltas, Runnable onSaved) {
+        long queued = System.nanoTime();
+        salesHistory.commit(newRecords, stockDeltas, () -> {
+                    SAVE_TIME.recordSince(queued);
+                    onSaved.run();
+                },
+                e -> JOptionPane.showMessageDialog(this, "Error saving sales records: " + e.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Open the shared history. Only the last sale ID is read; selling waits for it.
+    private void openSalesHistory() {
+        processSaleButton.setEnabled(false);
+        salesHistory.open(itemJournal, () -> {
+                    processSaleButton.setEnabled(true);
+                    String warning = salesHistory.takeRecoveryWarning();
+                    if (warning != null) JOptionPane.showMessageDialog(this, warning, "Recovered File", JOptionPane.WARNING_MESSAGE);
+                },
+                e -> JOptionPane.showMessageDialog(this, "Error opening sales records: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Stream the sales history in on first use, then show the report
+    private void loadSalesRecords() {
+        salesReportButton.setEnabled(false);
+        salesHistory.load(() -> {
+            salesReportButton.setEnabled(true);
+            showSalesReport();
+        }, e -> {
+            salesReportButton.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Error loading sales records: " + e.getMessage(), "Load Error", JOptionPane.ERROR_MESSAGE);
+        });
     }
 }
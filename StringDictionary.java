@@ -0,0 +1,37 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps repeated strings (item types, names) to small int codes so tables can
+// store an int per row instead of a String reference.
+public class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    // Code for the value, adding it if it is new
+    public synchronized int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    // Code for the value, or -1 if it was never encoded
+    public synchronized int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public synchronized String decode(int code) {
+        return values.get(code);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,117 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// One item's restock history from the supply ledger, a page at a time,
+// plus delivery totals for a date range. Ledger reads run on the persistence executor.
+public class SupplyHistoryDialog extends JDialog {
+
+    private static final int PAGE_SIZE = 50;
+
+    private final SupplyLedger ledger;
+    private final int itemId;
+    private final DefaultTableModel pageModel;
+    private final JLabel pageLabel = new JLabel();
+    private final JButton prevButton = new JButton("< Newer");
+    private final JButton nextButton = new JButton("Older >");
+    private int page;
+    private int pageCount;
+
+    private static final class PageResult {
+        final int page;
+        final int pages;
+        final List<SupplyLedger.Entry> entries;
+
+        PageResult(int page, int pages, List<SupplyLedger.Entry> entries) {
+            this.page = page;
+            this.pages = pages;
+            this.entries = entries;
+        }
+    }
+
+    public SupplyHistoryDialog(Frame owner, SupplyLedger ledger, int itemId, String itemName) {
+        super(owner, "Supply Record - " + itemName, false);
+        this.ledger = ledger;
+        this.itemId = itemId;
+        setSize(450, 420);
+        setLocationRelativeTo(owner);
+
+        pageModel = new DefaultTableModel(new Object[]{"Date", "Quantity"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(pageModel);
+
+        JPanel pagePanel = new JPanel();
+        pagePanel.add(prevButton);
+        pagePanel.add(pageLabel);
+        pagePanel.add(nextButton);
+        prevButton.addActionListener(e -> showPage(page - 1));
+        nextButton.addActionListener(e -> showPage(page + 1));
+
+        // Totals for a date range come from the ledger index, not the ledger lines
+        JTextField fromField = new JTextField(LocalDate.now().withDayOfMonth(1).toString(), 8);
+        JTextField toField = new JTextField(LocalDate.now().toString(), 8);
+        JLabel totalsLabel = new JLabel();
+        JButton totalsButton = new JButton("Totals");
+        totalsButton.addActionListener(e -> {
+            LocalDate from, to;
+            try {
+                from = LocalDate.parse(fromField.getText().trim());
+                to = LocalDate.parse(toField.getText().trim());
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this, "Dates must be in yyyy-MM-dd format.", "Input Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            PersistenceExecutor.get().submit(() -> ledger.totals(itemId, from, to),
+                    totals -> totalsLabel.setText(totals.deliveries + " deliveries, " + totals.units + " units"),
+                    this::showReadError);
+        });
+
+        JPanel rangePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        rangePanel.add(new JLabel("From:"));
+        rangePanel.add(fromField);
+        rangePanel.add(new JLabel("To:"));
+        rangePanel.add(toField);
+        rangePanel.add(totalsButton);
+        rangePanel.add(totalsLabel);
+
+        add(rangePanel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(pagePanel, BorderLayout.SOUTH);
+
+        showPage(0);
+    }
+
+    // Fetch one page (newest deliveries first) in the background
+    private void showPage(int requested) {
+        prevButton.setEnabled(false);
+        nextButton.setEnabled(false);
+        PersistenceExecutor.get().submit(() -> {
+            int count = ledger.count(itemId);
+            int pages = Math.max(1, (count + PAGE_SIZE - 1) / PAGE_SIZE);
+            int target = Math.max(0, Math.min(requested, pages - 1));
+            List<SupplyLedger.Entry> entries = ledger.page(itemId, target, PAGE_SIZE);
+            return new PageResult(target, pages, entries);
+        }, result -> {
+            page = result.page;
+            pageCount = result.pages;
+            pageModel.setRowCount(0);
+            for (SupplyLedger.Entry entry : result.entries) {
+                pageModel.addRow(new Object[]{entry.date.toString(), entry.quantity});
+            }
+            pageLabel.setText(result.entries.isEmpty() ? "No supply records" : "Page " + (page + 1) + " of " + pageCount);
+            prevButton.setEnabled(page > 0);
+            nextButton.setEnabled(page < pageCount - 1);
+        }, this::showReadError);
+    }
+
+    private void showReadError(Exception e) {
+        JOptionPane.showMessageDialog(this, "Error reading supply records: " + e.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
+    }
+}
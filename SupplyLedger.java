@@ -0,0 +1,402 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Restock history keyed by item ID, so renaming an item keeps its history.
+// supply_ledger.txt holds one "id,date,qty" line per delivery; deliveries from a bulk
+// import add a fourth field naming the import and the source line. Next to it,
+// supply_ledger.idx holds a fixed-width entry per line (item ID, byte offset,
+// line length, day, quantity). The index is read into memory at open, so one
+// item's page of history reads only its own lines and date-range totals need
+// no ledger reads at all. The ledger is the source of truth: a missing or short
+// index is rebuilt from it.
+// Methods do file I/O; call them on the persistence executor.
+public class SupplyLedger implements Closeable {
+
+    // One delivery
+    public static final class Entry {
+        public final LocalDate date;
+        public final int quantity;
+
+        Entry(LocalDate date, int quantity) {
+            this.date = date;
+            this.quantity = quantity;
+        }
+    }
+
+    // A delivery to record; see recordAll
+    public static final class Delivery {
+        public final int itemId;
+        public final LocalDate date;
+        public final int quantity;
+        public final String source; // "import:line" for a bulk import row, else null
+
+        public Delivery(int itemId, LocalDate date, int quantity) {
+            this(itemId, date, quantity, null);
+        }
+
+        public Delivery(int itemId, LocalDate date, int quantity, String source) {
+            this.itemId = itemId;
+            this.date = date;
+            this.quantity = quantity;
+            this.source = source;
+        }
+    }
+
+    // Deliveries and units over a date range
+    public static final class Totals {
+        public final int deliveries;
+        public final long units;
+
+        Totals(int deliveries, long units) {
+            this.deliveries = deliveries;
+            this.units = units;
+        }
+    }
+
+    private static final int INDEX_ENTRY_BYTES = 4 + 8 + 4 + 4 + 4; // id, offset, length, epoch day, qty
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // One item's deliveries: file positions in arrival order, days and quantities for totals
+    private static final class ItemHistory {
+        int size;
+        long[] offsets = new long[4];
+        int[] lengths = new int[4];
+        int[] days = new int[4];
+        int[] quantities = new int[4];
+
+        void add(long offset, int length, int day, int quantity) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            days[size] = day;
+            quantities[size] = quantity;
+            size++;
+        }
+    }
+
+    private final FileChannel ledger;
+    private final FileChannel index;
+    private final Map<Integer, ItemHistory> histories = new HashMap<>();
+    private final Path ledgerPath;
+    private final long recoveredBytes; // torn last line dropped at open
+    private final Map<String, Long> importStarts = new HashMap<>(); // import -> ledger size when its deliveries were first written
+
+    private SupplyLedger(Path ledgerPath, Path indexPath) throws IOException {
+        this.ledgerPath = ledgerPath;
+        this.recoveredBytes = SalesJournal.recover(ledgerPath, SupplyLedger::isWellFormed);
+        this.ledger = FileChannel.open(ledgerPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Open the ledger and load its index. If there is no ledger yet but a legacy
+    // name-keyed supply.txt exists, its lines are migrated using 'idsByName'
+    // (normalized names, see ItemCatalog.normalize); supply.txt itself is left as it was.
+    // The migrated ledger appears all at once, so a crash during migration leaves no ledger and it runs again.
+    public static SupplyLedger open(Path ledgerPath, Path legacyPath, Map<String, Integer> idsByName) throws IOException {
+        if (!Files.exists(ledgerPath) && Files.exists(legacyPath)) migrate(legacyPath, ledgerPath, idsByName);
+        SupplyLedger supplyLedger = new SupplyLedger(ledgerPath, indexPathFor(ledgerPath));
+        Metrics.get().fileSizeGauge(ledgerPath);
+        Metrics.get().fileSizeGauge(indexPathFor(ledgerPath));
+        supplyLedger.loadIndex();
+        return supplyLedger;
+    }
+
+    // Warning to show if opening cut off a torn last line, else null
+    public String getRecoveryWarning() {
+        return SalesJournal.recoveryWarning(ledgerPath, recoveredBytes);
+    }
+
+    // True if the line is a complete "id,date,qty[,source]" delivery
+    static boolean isWellFormed(String line) {
+        String[] parts = line.trim().split(",");
+        if (parts.length != 3 && parts.length != 4) return false;
+        try {
+            Integer.parseInt(parts[0]);
+            LocalDate.parse(parts[1]);
+            Integer.parseInt(parts[2]);
+            return true;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static Path indexPathFor(Path ledgerPath) {
+        String name = ledgerPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return ledgerPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".idx");
+    }
+
+    // Record a delivery: the ledger line is forced to disk, the index entry follows it
+    public synchronized void record(int itemId, LocalDate date, int quantity) throws IOException {
+        recordAll(List.of(new Delivery(itemId, date, quantity)));
+    }
+
+    // Record many deliveries with one ledger write and one fsync, then one index write.
+    // Import deliveries (those with a source) already written by an earlier call that failed
+    // are not written again, so an import's deliveries can be recorded again after an error.
+    public synchronized void recordAll(List<Delivery> deliveries) throws IOException {
+        deliveries = withoutRecorded(deliveries);
+        if (deliveries.isEmpty()) return;
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int[] lengths = new int[deliveries.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            Delivery delivery = deliveries.get(i);
+            byte[] line = (InventoryTableModel.formatId(delivery.itemId) + "," + delivery.date + "," + delivery.quantity
+                    + (delivery.source == null ? "" : "," + delivery.source) + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+            lines.write(line, 0, line.length);
+            lengths[i] = line.length;
+        }
+        long start = ledger.size();
+        for (Delivery delivery : deliveries) {
+            if (delivery.source != null) importStarts.putIfAbsent(importOf(delivery.source), start);
+        }
+        write(ledger, ByteBuffer.wrap(lines.toByteArray()), start);
+        ledger.force(false);
+
+        ByteBuffer entries = ByteBuffer.allocate(lengths.length * INDEX_ENTRY_BYTES);
+        long offset = start;
+        for (int i = 0; i < lengths.length; i++) {
+            Delivery delivery = deliveries.get(i);
+            entries.putInt(delivery.itemId).putLong(offset).putInt(lengths[i]).putInt((int) delivery.date.toEpochDay()).putInt(delivery.quantity);
+            offset += lengths[i];
+        }
+        entries.flip();
+        write(index, entries, index.size());
+
+        // In memory only once both writes went through; a retry indexes what a failed call left behind
+        offset = start;
+        for (int i = 0; i < lengths.length; i++) {
+            Delivery delivery = deliveries.get(i);
+            histories.computeIfAbsent(delivery.itemId, k -> new ItemHistory()).add(offset, lengths[i], (int) delivery.date.toEpochDay(), delivery.quantity);
+            offset += lengths[i];
+        }
+    }
+
+    // The deliveries whose source line is not in the ledger yet. Only an import whose deliveries
+    // were written before in this session can have any, so the ledger is read (from where that
+    // import's first write started) only when an import is recorded again. Its lines found there
+    // are indexed now if the failed call did not get that far.
+    private List<Delivery> withoutRecorded(List<Delivery> deliveries) throws IOException {
+        long start = Long.MAX_VALUE;
+        Set<String> sources = new HashSet<>();
+        for (Delivery delivery : deliveries) {
+            if (delivery.source == null) continue;
+            sources.add(delivery.source);
+            Long importStart = importStarts.get(importOf(delivery.source));
+            if (importStart != null) start = Math.min(start, importStart);
+        }
+        if (start == Long.MAX_VALUE) return deliveries;
+
+        Set<Long> indexed = new HashSet<>();
+        for (ItemHistory history : histories.values()) {
+            for (int i = 0; i < history.size; i++) {
+                if (history.offsets[i] >= start) indexed.add(history.offsets[i]);
+            }
+        }
+        Set<String> recorded = new HashSet<>();
+        long end = ledger.size();
+        // Not closed: closing the stream would close the ledger channel
+        InputStream in = new BufferedInputStream(Channels.newInputStream(ledger.position(start)));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long lineStart = start;
+        long position = start;
+        int b;
+        while (position < end && (b = in.read()) != -1) {
+            position++;
+            line.write(b);
+            if (b != '\n') continue;
+            String text = line.toString(StandardCharsets.UTF_8.name());
+            String[] parts = text.trim().split(",");
+            if (parts.length == 4 && sources.contains(parts[3]) && recorded.add(parts[3]) && !indexed.contains(lineStart)) {
+                indexLine(text, lineStart, (int) (position - lineStart));
+            }
+            line.reset();
+            lineStart = position;
+        }
+
+        List<Delivery> rest = new ArrayList<>();
+        for (Delivery delivery : deliveries) {
+            if (delivery.source == null || !recorded.contains(delivery.source)) rest.add(delivery);
+        }
+        return rest;
+    }
+
+    private static String importOf(String source) {
+        return source.substring(0, source.lastIndexOf(':'));
+    }
+
+    // Highest item ID with a delivery on record, 0 if none
+    public synchronized int maxItemId() {
+        int max = 0;
+        for (int itemId : histories.keySet()) max = Math.max(max, itemId);
+        return max;
+    }
+
+    public synchronized int count(int itemId) {
+        ItemHistory history = histories.get(itemId);
+        return history == null ? 0 : history.size;
+    }
+
+    // One page of an item's deliveries, newest first; reads only those lines from the ledger
+    public synchronized List<Entry> page(int itemId, int page, int pageSize) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ItemHistory history = histories.get(itemId);
+        if (history == null) return entries;
+        int first = history.size - 1 - page * pageSize;
+        for (int i = first; i >= 0 && i > first - pageSize; i--) {
+            ByteBuffer buffer = ByteBuffer.allocate(history.lengths[i]);
+            while (buffer.hasRemaining() && ledger.read(buffer, history.offsets[i] + buffer.position()) > 0) {
+                // keep reading
+            }
+            String[] parts = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim().split(",");
+            entries.add(new Entry(LocalDate.parse(parts[1]), Integer.parseInt(parts[2])));
+        }
+        return entries;
+    }
+
+    // Deliveries of one item dated from..to, both inclusive; answered from the in-memory index
+    public synchronized Totals totals(int itemId, LocalDate from, LocalDate to) {
+        ItemHistory history = histories.get(itemId);
+        if (history == null) return new Totals(0, 0);
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        int deliveries = 0;
+        long units = 0;
+        for (int i = 0; i < history.size; i++) {
+            if (history.days[i] >= fromDay && history.days[i] <= toDay) {
+                deliveries++;
+                units += history.quantities[i];
+            }
+        }
+        return new Totals(deliveries, units);
+    }
+
+    // Read the index; drop entries past the end of the ledger and index any ledger lines it lacks
+    private void loadIndex() throws IOException {
+        long ledgerSize = ledger.size();
+        long entries = index.size() / INDEX_ENTRY_BYTES;
+        ByteBuffer all = ByteBuffer.allocate((int) (entries * INDEX_ENTRY_BYTES));
+        while (all.hasRemaining() && index.read(all, all.position()) > 0) {
+            // keep reading
+        }
+        all.flip();
+
+        long covered = 0;
+        for (long n = 0; n < entries; n++) {
+            int itemId = all.getInt();
+            long offset = all.getLong();
+            int length = all.getInt();
+            int day = all.getInt();
+            int quantity = all.getInt();
+            if (offset < covered || offset + length > ledgerSize) {
+                // The index does not line up with the ledger: start again from the ledger
+                histories.clear();
+                covered = 0;
+                break;
+            }
+            histories.computeIfAbsent(itemId, k -> new ItemHistory()).add(offset, length, day, quantity);
+            covered = offset + length;
+        }
+        int indexed = histories.values().stream().mapToInt(h -> h.size).sum();
+        index.truncate((long) indexed * INDEX_ENTRY_BYTES);
+        if (covered < ledgerSize) indexLedgerFrom(covered, ledgerSize);
+    }
+
+    // Scan ledger lines from 'start' and add them to the index
+    private void indexLedgerFrom(long start, long end) throws IOException {
+        // Not closed: closing the stream would close the ledger channel
+        InputStream in = new BufferedInputStream(Channels.newInputStream(ledger.position(start)));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long lineStart = start;
+        long position = start;
+        int b;
+        while (position < end && (b = in.read()) != -1) {
+            position++;
+            line.write(b);
+            if (b == '\n') {
+                indexLine(line.toString(StandardCharsets.UTF_8.name()), lineStart, (int) (position - lineStart));
+                line.reset();
+                lineStart = position;
+            }
+        }
+    }
+
+    private void indexLine(String text, long offset, int length) throws IOException {
+        String[] parts = text.trim().split(",");
+        try {
+            appendIndex(Integer.parseInt(parts[0]), offset, length, (int) LocalDate.parse(parts[1]).toEpochDay(), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Skipping malformed line in supply ledger: " + text.trim());
+        }
+    }
+
+    private void appendIndex(int itemId, long offset, int length, int day, int quantity) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putInt(itemId).putLong(offset).putInt(length).putInt(day).putInt(quantity).flip();
+        write(index, entry, index.size());
+        histories.computeIfAbsent(itemId, k -> new ItemHistory()).add(offset, length, day, quantity);
+    }
+
+    // Copy legacy "name,date,qty" lines under the item's current ID into a new ledger.
+    // They are written to a temp file, forced and moved into place; the index is built from the ledger at open.
+    private static void migrate(Path legacyPath, Path ledgerPath, Map<String, Integer> idsByName) throws IOException {
+        int migrated = 0;
+        int skipped = 0;
+        Path temp = ledgerPath.resolveSibling(ledgerPath.getFileName() + ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(legacyPath, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                Integer id = parts.length == 3 ? idsByName.get(ItemCatalog.normalize(parts[0])) : null;
+                try {
+                    if (id == null) throw new IllegalArgumentException("unknown item");
+                    LocalDate date = LocalDate.parse(parts[1].trim());
+                    int quantity = Integer.parseInt(parts[2].trim());
+                    writer.write(InventoryTableModel.formatId(id) + "," + date + "," + quantity + LINE_SEPARATOR);
+                    migrated++;
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    System.err.println("Not migrating supply line (" + e.getMessage() + "): " + line);
+                    skipped++;
+                }
+            }
+        }
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.deleteIfExists(indexPathFor(ledgerPath)); // left by an earlier, interrupted migration
+        Files.move(temp, ledgerPath, StandardCopyOption.ATOMIC_MOVE);
+        SalesJournal.syncDirectory(ledgerPath);
+        System.err.println("Migrated " + migrated + " supply records from " + legacyPath + (skipped > 0 ? ", skipped " + skipped : ""));
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        ledger.close();
+        index.close();
+    }
+}
@@ -1,21 +1,24 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.io.*;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 public class SupplyWindow extends JFrame {
 
     private JTextField dateField, quantityField;
     private JButton addSupplyButton;
-    private String itemName;
+    private int itemId;
 
-    private DefaultTableModel inventoryModel; // reference to update table
+    private CheckoutEngine checkoutEngine; // owner of stock quantities; the inventory table follows it
+    private SupplyLedger supplyLedger; // restock history keyed by item ID
+    private ItemJournal itemJournal; // log of stock changes
 
-    public SupplyWindow(String itemName, DefaultTableModel inventoryModel) {
-        this.itemName = itemName;
-        this.inventoryModel = inventoryModel;
+    public SupplyWindow(int itemId, String itemName, CheckoutEngine checkoutEngine, SupplyLedger supplyLedger, ItemJournal itemJournal) {
+        this.itemId = itemId;
+        this.checkoutEngine = checkoutEngine;
+        this.supplyLedger = supplyLedger;
+        this.itemJournal = itemJournal;
 
         setTitle("Add Supply - " + itemName);
         setSize(300, 200);
@@ -37,61 +40,69 @@ public class SupplyWindow extends JFrame {
     }
 
     private void addSupply(ActionEvent e) {
-        String date = dateField.getText().trim();
+        String dateStr = dateField.getText().trim();
         String quantityStr = quantityField.getText().trim();
 
-        if (date.isEmpty() || quantityStr.isEmpty()) {
+        if (dateStr.isEmpty() || quantityStr.isEmpty()) {
             JOptionPane.showMessageDialog(this, "All fields must be filled.", "Input Error", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
+        LocalDate date;
         try {
-            int addedQty = Integer.parseInt(quantityStr);
+            date = LocalDate.parse(dateStr);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Date must be in yyyy-MM-dd format.", "Input Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int addedQty;
+        try {
+            addedQty = Integer.parseInt(quantityStr);
             if (addedQty <= 0) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Quantity must be a valid positive number.", "Input Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
-            // Append to supply.txt
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter("supply.txt", true))) {
-                writer.write(itemName + "," + date + "," + addedQty);
-                writer.newLine();
-            }
+        int current = checkoutEngine.getStock(itemId);
+        if ((long) current + addedQty > Integer.MAX_VALUE) {
+            JOptionPane.showMessageDialog(this, "This delivery would put the item over the largest stock a single item can hold.",
+                    "Input Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
 
-            // Update inventory table model quantity
-            boolean found = false;
-            for (int i = 0; i < inventoryModel.getRowCount(); i++) {
-                if (inventoryModel.getValueAt(i, 2).toString().equalsIgnoreCase(itemName)) {
-                    int currentQty = Integer.parseInt(inventoryModel.getValueAt(i, 4).toString());
-                    int newQty = currentQty + addedQty;
-                    inventoryModel.setValueAt(String.valueOf(newQty), i, 4);
-                    found = true;
-                    break;
-                }
+        // Record the delivery in the supply ledger in the background, then update the inventory
+        addSupplyButton.setEnabled(false);
+        PersistenceExecutor.get().submit(() -> {
+            supplyLedger.record(itemId, date, addedQty);
+            return null;
+        }, ignored -> {
+            // Restock through the checkout engine; the inventory table follows it. The item may have
+            // been deleted, or restocked past the limit, while the delivery was being written.
+            String notUpdated = null;
+            try {
+                if (checkoutEngine.restock(itemId, addedQty) < 0) notUpdated = "the item has been deleted.";
+            } catch (ArithmeticException ex) {
+                notUpdated = "it would go over the largest stock a single item can hold.";
+            }
+            if (notUpdated != null) {
+                JOptionPane.showMessageDialog(this, "The delivery was added to the supply history, but the stock was not updated: " + notUpdated,
+                        "Stock Not Updated", JOptionPane.WARNING_MESSAGE);
+                this.dispose();
+                return;
+            }
+            // Log the stock delta instead of rewriting item.txt
+            if (itemJournal != null) {
+                itemJournal.submit(ItemJournal.stockDeltaEntry(InventoryTableModel.formatId(itemId), addedQty),
+                        ex -> JOptionPane.showMessageDialog(null, "Error updating inventory: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE));
             }
-
-            // Optional: Save back to item.txt
-            if (found) updateItemFile();
 
             JOptionPane.showMessageDialog(this, "Supply added and inventory updated.");
             this.dispose();
-
-        } catch (NumberFormatException ex) {
-            JOptionPane.showMessageDialog(this, "Quantity must be a valid positive number.", "Input Error", JOptionPane.WARNING_MESSAGE);
-        } catch (IOException ex) {
+        }, ex -> {
+            addSupplyButton.setEnabled(true);
             JOptionPane.showMessageDialog(this, "Error updating inventory: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    // Rewrite item.txt with updated inventory
-    private void updateItemFile() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("item.txt"))) {
-            for (int i = 0; i < inventoryModel.getRowCount(); i++) {
-                writer.write(String.join(",",
-                        inventoryModel.getValueAt(i, 0).toString(),
-                        inventoryModel.getValueAt(i, 1).toString(),
-                        inventoryModel.getValueAt(i, 2).toString(),
-                        inventoryModel.getValueAt(i, 3).toString(),
-                        inventoryModel.getValueAt(i, 4).toString()));
-                writer.newLine();
-            }
-        }
+        });
     }
 }
@@ -0,0 +1,241 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+// Workloads for the JMH benchmarks in the bench package (CatalogBenchmark, SalesBenchmark).
+// Each workload builds its data for one size in a scratch directory and returns the operation
+// to time. JMH will not generate code for a benchmark class in the default package, and a class
+// in a named package cannot refer to the application classes, so the JMH classes look prepare()
+// up by name and only see the returned LongSupplier.
+//
+// Run with: mvn -B test-compile exec:exec [-Djmh.args="-p items=1000,100000 Catalog"]
+// Results go to target/jmh-result.json (JMH -rf json).
+public final class Benchmarks {
+
+    // One timed operation; the return value is consumed so the JIT cannot drop the work
+    private interface Op {
+        long run() throws Exception;
+    }
+
+    // Builds the data for one size and returns the operation to time
+    private interface Setup {
+        Op prepare(int size, Path dir) throws Exception;
+    }
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] TYPES = {"System Unit", "PC Set", "Mouse", "Keyboard", "Monitor", "PC Case",
+            "SSD", "GPU", "CPU", "Motherboard", "RAM", "Fan", "PSU", "Headphone"};
+
+    // Keyed by the name of the JMH method that times the workload
+    private static final Map<String, Setup> WORKLOADS = workloads();
+
+    private Benchmarks() {
+    }
+
+    // Build the named workload's data for the size in dir and return its operation
+    public static LongSupplier prepare(String name, int size, Path dir) throws Exception {
+        Setup setup = WORKLOADS.get(name);
+        if (setup == null) throw new IllegalArgumentException("Unknown workload " + name);
+        Op op = setup.prepare(size, dir);
+        return () -> {
+            try {
+                return op.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(name + " failed", e);
+            }
+        };
+    }
+
+    private static Map<String, Setup> workloads() {
+        Map<String, Setup> map = new HashMap<>();
+
+        // ---- Catalog load and save ----
+        map.put("catalogLoad", (size, dir) -> {
+            Path itemFile = writeItems(dir, size);
+            new ItemJournal(itemFile.toString(), dir.resolve("item.log").toString()).load(); // leaves item.bin
+            return () -> loadCatalog(itemFile, dir);
+        });
+        map.put("catalogLoadFirstRun", (size, dir) -> {
+            // No binary snapshot yet: parse item.txt and write item.bin
+            Path itemFile = writeItems(dir, size);
+            return () -> {
+                Files.deleteIfExists(BinarySnapshot.snapshotPathFor(itemFile));
+                return loadCatalog(itemFile, dir);
+            };
+        });
+        map.put("catalogCheckpoint", (size, dir) -> {
+            Path itemFile = writeItems(dir, size);
+            ItemJournal journal = new ItemJournal(itemFile.toString(), dir.resolve("item.log").toString());
+            journal.load();
+            return () -> {
+                journal.checkpoint();
+                return 1;
+            };
+        });
+
+        // ---- Lookups ----
+        map.put("lookupByName", (size, dir) -> {
+            InventoryTableModel model = model(size);
+            ItemCatalog catalog = new ItemCatalog(model);
+            String[] keys = sampleKeys(model, 4096, row -> model.getName(row));
+            int[] next = {0};
+            return () -> catalog.findRowByName(keys[next[0]++ & 4095]);
+        });
+        map.put("lookupById", (size, dir) -> {
+            InventoryTableModel model = model(size);
+            ItemCatalog catalog = new ItemCatalog(model);
+            String[] keys = sampleKeys(model, 4096, row -> model.getId(row));
+            int[] next = {0};
+            return () -> catalog.findRowById(keys[next[0]++ & 4095]);
+        });
+        map.put("lookupTypeahead", (size, dir) -> {
+            InventoryTableModel model = model(size);
+            ItemSearchIndex index = new ItemSearchIndex(model);
+            String[] keys = sampleKeys(model, 4096, row -> model.getName(row).split(" ")[1]);
+            int[] next = {0};
+            return () -> index.search(keys[next[0]++ & 4095], null).cardinality();
+        });
+
+        // ---- Selling ----
+        map.put("saleCheckout", (size, dir) -> {
+            InventoryTableModel model = model(size);
+            CheckoutEngine engine = new CheckoutEngine();
+            engine.loadFrom(model);
+            Random random = new Random(7);
+            return () -> {
+                int a = 1 + random.nextInt(size);
+                int b = 1 + random.nextInt(size);
+                CheckoutEngine.Result result = engine.checkout(List.of(new CheckoutEngine.Line(a, 1), new CheckoutEngine.Line(b, 1)));
+                engine.restock(a, 1);
+                engine.restock(b, 1);
+                return result.isCommitted() ? 1 : 0;
+            };
+        });
+        map.put("saleCommit", (size, dir) -> commitOp(size, dir, SalesJournal.SyncPolicy.NONE));
+        map.put("saleCommitFsync", (size, dir) -> commitOp(size, dir, SalesJournal.SyncPolicy.ON_APPEND));
+
+        // ---- Sales history and reports ----
+        map.put("salesLoad", (size, dir) -> {
+            Path salesFile = writeSales(dir, size);
+            SalesJournal.readAll(salesFile); // leaves sales_records.bin
+            return () -> SalesJournal.readAll(salesFile).size();
+        });
+        map.put("salesLoadText", (size, dir) -> {
+            Path salesFile = writeSales(dir, size);
+            return () -> {
+                Files.deleteIfExists(BinarySnapshot.snapshotPathFor(salesFile));
+                return SalesJournal.readAll(salesFile).size();
+            };
+        });
+        map.put("reportRollup", (size, dir) -> {
+            SalesStore store = SalesJournal.readAll(writeSales(dir, size));
+            return () -> SalesRollup.of(store).getGrandTotals().getLines();
+        });
+        map.put("reportSortByDate", (size, dir) -> {
+            SalesStore store = SalesJournal.readAll(writeSales(dir, size));
+            return () -> {
+                SalesReportTableModel report = new SalesReportTableModel(store);
+                report.toggleSort(SalesReportTableModel.DATE_TIME);
+                return report.getRowCount();
+            };
+        });
+        map.put("reportLast7Days", (size, dir) -> {
+            SalesStore store = SalesJournal.readAll(writeSales(dir, size));
+            SalesTimeIndex index = new SalesTimeIndex(store);
+            LocalDate end = LocalDate.of(2024, 1, 1).plusDays(size / 500);
+            return () -> index.betweenDays(end.minusDays(6), end).length;
+        });
+        return map;
+    }
+
+    private static long loadCatalog(Path itemFile, Path dir) throws IOException {
+        try (ItemJournal journal = new ItemJournal(itemFile.toString(), dir.resolve("item.log").toString())) {
+            InventoryTableModel model = new InventoryTableModel();
+            return model.loadRows(journal.load());
+        }
+    }
+
+    private static Op commitOp(int size, Path dir, SalesJournal.SyncPolicy policy) throws IOException {
+        SalesJournal journal = new SalesJournal(writeSales(dir, size).toString(), policy);
+        long[] id = {size};
+        return () -> {
+            String now = LocalDateTime.now().format(DATE_TIME_FORMAT);
+            journal.append(List.of(
+                    new SaleRecord(SaleIdAllocator.format(++id[0]), "GPU", "Bench Item A", 1, 100.0, 100.0, now),
+                    new SaleRecord(SaleIdAllocator.format(++id[0]), "RAM", "Bench Item B", 2, 50.0, 100.0, now)));
+            return id[0];
+        };
+    }
+
+    // ---- Test data ----
+
+    private static Path writeItems(Path dir, int size) throws IOException {
+        Path file = dir.resolve("item.txt");
+        Random random = new Random(size);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int id = 1; id <= size; id++) {
+                writer.write(InventoryTableModel.formatId(id) + "," + TYPES[random.nextInt(TYPES.length)] + "," + itemName(id)
+                        + "," + InventoryTableModel.formatPrice(500 + random.nextInt(500_000)) + "," + random.nextInt(500));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    // About 500 sales a day from 2024-01-01, over 1000 distinct items
+    private static Path writeSales(Path dir, int size) throws IOException {
+        Path file = dir.resolve("sales_records.txt");
+        Random random = new Random(size);
+        LocalDateTime time = LocalDateTime.of(2024, 1, 1, 9, 0);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= size; i++) {
+                int item = 1 + random.nextInt(1000);
+                int quantity = 1 + random.nextInt(3);
+                long priceCents = 500 + (item * 137L % 100_000);
+                writer.write(SaleIdAllocator.format(i) + "," + TYPES[item % TYPES.length] + "," + itemName(item) + "," + quantity
+                        + "," + InventoryTableModel.formatPrice(priceCents) + "," + InventoryTableModel.formatPrice(priceCents * quantity)
+                        + "," + time.format(DATE_TIME_FORMAT));
+                writer.newLine();
+                time = time.plusSeconds(172);
+            }
+        }
+        return file;
+    }
+
+    private static InventoryTableModel model(int size) {
+        List<String[]> rows = new ArrayList<>(size);
+        Random random = new Random(size);
+        for (int id = 1; id <= size; id++) {
+            rows.add(new String[]{String.valueOf(id), TYPES[random.nextInt(TYPES.length)], itemName(id),
+                    InventoryTableModel.formatPrice(500 + random.nextInt(500_000)), "1000000"});
+        }
+        InventoryTableModel model = new InventoryTableModel();
+        model.loadRows(rows);
+        return model;
+    }
+
+    private static String itemName(int id) {
+        return "Item " + Integer.toString(id * 7919 % 1_000_003, 36) + " " + id;
+    }
+
+    private interface RowKey {
+        String of(int row);
+    }
+
+    private static String[] sampleKeys(InventoryTableModel model, int count, RowKey key) {
+        Random random = new Random(11);
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) keys[i] = key.of(random.nextInt(model.getRowCount()));
+        return keys;
+    }
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+// Catalog load and checkpoint, name and ID lookup, and checkout, over catalog sizes from 1k to 1M items
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int items;
+
+    private Path dir;
+    private LongSupplier workload;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws Exception {
+        dir = Files.createTempDirectory("pos-bench");
+        workload = Workloads.prepare(params, items, dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Workloads.delete(dir);
+    }
+
+    // Open item.txt from its binary snapshot and replay the log
+    @Benchmark
+    public long catalogLoad() {
+        return workload.getAsLong();
+    }
+
+    // Parse item.txt with no binary snapshot yet, and write item.bin
+    @Benchmark
+    public long catalogLoadFirstRun() {
+        return workload.getAsLong();
+    }
+
+    // Save: write the whole catalog and truncate the log
+    @Benchmark
+    public long catalogCheckpoint() {
+        return workload.getAsLong();
+    }
+
+    @Benchmark
+    public long lookupByName() {
+        return workload.getAsLong();
+    }
+
+    @Benchmark
+    public long lookupById() {
+        return workload.getAsLong();
+    }
+
+    @Benchmark
+    public long lookupTypeahead() {
+        return workload.getAsLong();
+    }
+
+    // Take stock for a two-line sale (and put it back)
+    @Benchmark
+    public long saleCheckout() {
+        return workload.getAsLong();
+    }
+}
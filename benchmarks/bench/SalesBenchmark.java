@@ -0,0 +1,79 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+// Sales history load, sale commit and report generation, over sales history sizes from 10k to 1M records
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SalesBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int sales;
+
+    private Path dir;
+    private LongSupplier workload;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws Exception {
+        dir = Files.createTempDirectory("pos-bench");
+        workload = Workloads.prepare(params, sales, dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Workloads.delete(dir);
+    }
+
+    // Read the history from its binary snapshot
+    @Benchmark
+    public long salesLoad() {
+        return workload.getAsLong();
+    }
+
+    // Parse sales_records.txt with no binary snapshot yet
+    @Benchmark
+    public long salesLoadText() {
+        return workload.getAsLong();
+    }
+
+    // Append a two-line sale without forcing it to disk
+    @Benchmark
+    public long saleCommit() {
+        return workload.getAsLong();
+    }
+
+    // Append a two-line sale and force it to disk
+    @Benchmark
+    public long saleCommitFsync() {
+        return workload.getAsLong();
+    }
+
+    // Totals by type and item for the sales report
+    @Benchmark
+    public long reportRollup() {
+        return workload.getAsLong();
+    }
+
+    // Build the All Sales table sorted by date
+    @Benchmark
+    public long reportSortByDate() {
+        return workload.getAsLong();
+    }
+
+    // Find the records of the last seven days
+    @Benchmark
+    public long reportLast7Days() {
+        return workload.getAsLong();
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+// Bridge to the default-package Benchmarks class, which this package cannot name
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    // The workload timed by the running benchmark method, built for the size in dir
+    static LongSupplier prepare(BenchmarkParams params, int size, Path dir) throws Exception {
+        String benchmark = params.getBenchmark();
+        String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+        try {
+            return (LongSupplier) Class.forName("Benchmarks")
+                    .getMethod("prepare", String.class, int.class, Path.class)
+                    .invoke(null, name, size, dir);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}